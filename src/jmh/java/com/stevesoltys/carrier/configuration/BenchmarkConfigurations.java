@@ -0,0 +1,32 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+
+import java.util.Map;
+
+/**
+ * Initializes {@link CarrierConfiguration}s for benchmarks, without going through the configuration file.
+ *
+ * @author Steve Soltys
+ */
+public final class BenchmarkConfigurations {
+
+    private BenchmarkConfigurations() {
+    }
+
+    /**
+     * Initializes the given configuration.
+     *
+     * @param configuration    The configuration.
+     * @param configurationMap The parsed configuration map.
+     * @param <T>              The configuration type.
+     * @return The initialized configuration.
+     * @throws CarrierConfigurationException If the configuration map is invalid.
+     */
+    public static <T extends CarrierConfiguration> T initialize(T configuration, Map<String, Object> configurationMap)
+            throws CarrierConfigurationException {
+
+        configuration.initialize(configurationMap);
+        return configuration;
+    }
+}
@@ -0,0 +1,43 @@
+package com.stevesoltys.carrier.model;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.mail.internet.AddressException;
+import javax.mail.internet.InternetAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link MaskedAddress#generateReplyAddress(String, InternetAddress)}, which runs for every message
+ * forwarded to a masked address.
+ *
+ * @author Steve Soltys
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MaskedAddressBenchmark {
+
+    /**
+     * The masked address.
+     */
+    private MaskedAddress maskedAddress;
+
+    /**
+     * The original 'from' address.
+     */
+    private InternetAddress fromAddress;
+
+    @Setup
+    public void setup() throws AddressException {
+        maskedAddress = new MaskedAddress("shopping@mydomain.com", "someone@example.net");
+        fromAddress = new InternetAddress("alice@example.org");
+    }
+
+    @Benchmark
+    public ReplyAddress generateReplyAddress() {
+        return maskedAddress.generateReplyAddress("mydomain.com", fromAddress);
+    }
+}
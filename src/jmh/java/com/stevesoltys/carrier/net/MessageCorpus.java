@@ -0,0 +1,171 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * The corpus of messages used by the benchmarks. The plain and HTML messages are loaded from the benchmark resources,
+ * while the larger messages are generated from a fixed seed, so that every run works with the same bytes.
+ *
+ * @author Steve Soltys
+ */
+public enum MessageCorpus {
+
+    /**
+     * A short plain text message.
+     */
+    PLAIN,
+
+    /**
+     * A newsletter with plain text and HTML alternatives.
+     */
+    HTML,
+
+    /**
+     * A short message with several binary attachments.
+     */
+    ATTACHMENTS,
+
+    /**
+     * A plain text message with a large body.
+     */
+    LARGE;
+
+    /**
+     * The number of attachments in the {@link #ATTACHMENTS} message.
+     */
+    private static final int ATTACHMENT_COUNT = 8;
+
+    /**
+     * The size of each attachment in the {@link #ATTACHMENTS} message, in bytes.
+     */
+    private static final int ATTACHMENT_SIZE = 256 * 1024;
+
+    /**
+     * The size of the body of the {@link #LARGE} message, in bytes.
+     */
+    private static final int LARGE_BODY_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The seed used for generating message content.
+     */
+    private static final long SEED = 0x6361727269657231L;
+
+    /**
+     * The headers used for the generated messages.
+     */
+    private static final String GENERATED_HEADERS = "Message-ID: <20170316101500.GB4410@mail.example.org>\r\n"
+            + "Date: Thu, 16 Mar 2017 10:15:00 -0400\r\n"
+            + "From: Alice Example <alice@example.org>\r\n"
+            + "To: shopping@mydomain.com\r\n"
+            + "Subject: Documents for your records\r\n"
+            + "MIME-Version: 1.0\r\n";
+
+    /**
+     * Gets the raw message data, as it would be received over SMTP.
+     *
+     * @return The raw message data.
+     * @throws IOException If there is an error while loading the message.
+     */
+    public byte[] load() throws IOException {
+
+        switch (this) {
+            case PLAIN:
+                return loadResource("plain.eml");
+
+            case HTML:
+                return loadResource("html.eml");
+
+            case ATTACHMENTS:
+                return generateAttachments();
+
+            case LARGE:
+                return generateLargeBody();
+
+            default:
+                throw new IllegalStateException("Unknown message: " + this);
+        }
+    }
+
+    /**
+     * Loads a message from the corpus resources, converting its line endings to CRLF.
+     *
+     * @param name The resource name.
+     * @return The raw message data.
+     * @throws IOException If there is an error while reading the resource.
+     */
+    private static byte[] loadResource(String name) throws IOException {
+
+        try (InputStream inputStream = MessageCorpus.class.getResourceAsStream("/corpus/" + name)) {
+
+            if (inputStream == null) {
+                throw new IOException("Could not find corpus message: " + name);
+            }
+
+            String message = new String(ByteStreams.toByteArray(inputStream), StandardCharsets.UTF_8);
+            return message.replace("\r\n", "\n").replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Generates the {@link #ATTACHMENTS} message.
+     *
+     * @return The raw message data.
+     */
+    private static byte[] generateAttachments() {
+        Random random = new Random(SEED);
+        String boundary = "----=_Part_2048_20170316";
+
+        StringBuilder builder = new StringBuilder(GENERATED_HEADERS)
+                .append("Content-Type: multipart/mixed; boundary=\"").append(boundary).append("\"\r\n\r\n")
+                .append("--").append(boundary).append("\r\n")
+                .append("Content-Type: text/plain; charset=utf-8\r\n\r\n")
+                .append("Hi,\r\n\r\nThe documents you asked for are attached.\r\n\r\nAlice\r\n");
+
+        for (int i = 0; i < ATTACHMENT_COUNT; i++) {
+            byte[] attachment = new byte[ATTACHMENT_SIZE];
+            random.nextBytes(attachment);
+
+            builder.append("--").append(boundary).append("\r\n")
+                    .append("Content-Type: application/pdf; name=\"document-").append(i).append(".pdf\"\r\n")
+                    .append("Content-Disposition: attachment; filename=\"document-").append(i).append(".pdf\"\r\n")
+                    .append("Content-Transfer-Encoding: base64\r\n\r\n")
+                    .append(Base64.getMimeEncoder().encodeToString(attachment)).append("\r\n");
+        }
+
+        builder.append("--").append(boundary).append("--\r\n");
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Generates the {@link #LARGE} message.
+     *
+     * @return The raw message data.
+     */
+    private static byte[] generateLargeBody() {
+        Random random = new Random(SEED);
+        String[] words = {"delivery", "message", "address", "server", "the", "and", "of", "to", "a", "forwarded",
+                "report", "account", "summary", "quarter", "results", "with", "for", "in", "record", "domain"};
+
+        StringBuilder builder = new StringBuilder(LARGE_BODY_SIZE + 1024).append(GENERATED_HEADERS)
+                .append("Content-Type: text/plain; charset=utf-8\r\n")
+                .append("Content-Transfer-Encoding: 7bit\r\n\r\n");
+
+        while (builder.length() < LARGE_BODY_SIZE) {
+            StringBuilder line = new StringBuilder();
+
+            while (line.length() < 70) {
+                line.append(words[random.nextInt(words.length)]).append(' ');
+            }
+
+            builder.append(line.toString().trim()).append("\r\n");
+        }
+
+        return builder.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+}
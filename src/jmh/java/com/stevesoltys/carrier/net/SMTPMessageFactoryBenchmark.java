@@ -0,0 +1,171 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.io.ByteStreams;
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPServerConfiguration;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import tech.blueglacier.email.Email;
+
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.KeyPairGenerator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.stevesoltys.carrier.configuration.BenchmarkConfigurations.initialize;
+
+/**
+ * Benchmarks for the forwarding pipeline: parsing a received message, building the forwarded message with
+ * {@link SMTPMessageFactory}, optionally signing it, and writing it out as it would be sent. The raw forwarding mode
+ * is measured alongside it for comparison.
+ *
+ * @author Steve Soltys
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SMTPMessageFactoryBenchmark {
+
+    /**
+     * The 'from' address of the forwarded message.
+     */
+    private static final String FROM_ADDRESS = "x7k2m9q4@mydomain.com";
+
+    /**
+     * The 'to' address of the forwarded message.
+     */
+    private static final String TO_ADDRESS = "someone@example.net";
+
+    /**
+     * The message being forwarded.
+     */
+    @Param({"PLAIN", "HTML", "ATTACHMENTS", "LARGE"})
+    private MessageCorpus message;
+
+    /**
+     * The DKIM flag.
+     */
+    @Param({"false", "true"})
+    private boolean dkim;
+
+    /**
+     * The parser.
+     */
+    private SMTPMessageParser messageParser;
+
+    /**
+     * The message factory.
+     */
+    private SMTPMessageFactory messageFactory;
+
+    /**
+     * The raw message data.
+     */
+    private byte[] data;
+
+    /**
+     * The raw message data, as it would be read from the message spool.
+     */
+    private SpooledMessage spooledMessage;
+
+    /**
+     * The temporary DKIM private key file.
+     */
+    private File privateKeyFile;
+
+    @Setup
+    public void setup() throws Exception {
+        data = message.load();
+        spooledMessage = new SpooledMessage(0, "alice@example.org", Collections.singletonList("shopping@mydomain.com"),
+                ByteBuffer.wrap(data));
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+
+        privateKeyFile = File.createTempFile("carrier-benchmark", ".der");
+        Files.write(privateKeyFile.toPath(), keyPairGenerator.generateKeyPair().getPrivate().getEncoded());
+
+        Map<String, Object> client = new HashMap<>();
+        client.put("dkim", dkim);
+        client.put("dkim_selector", "mail");
+        client.put("dkim_private_key", privateKeyFile.getAbsolutePath());
+        client.put("domain", "mydomain.com");
+
+        Map<String, Object> configuration = new HashMap<>();
+        configuration.put("client", client);
+        configuration.put("server", Collections.singletonMap("localhost", "mx.mydomain.com"));
+
+        SMTPClientConfiguration clientConfiguration = initialize(new SMTPClientConfiguration(), configuration);
+        SMTPSessionFactory sessionFactory = new SMTPSessionFactory(clientConfiguration,
+                initialize(new SMTPServerConfiguration(), configuration),
+                initialize(new DeliveryConfiguration(), configuration));
+
+        DkimSignerFactory signerFactory = new DkimSignerFactory(clientConfiguration, new SimpleMeterRegistry());
+
+        if (dkim) {
+            // The benchmark should not depend on the selector being published in DNS.
+            signerFactory.getSigner(FROM_ADDRESS).setCheckDomainKey(false);
+        }
+
+        messageParser = new SMTPMessageParser();
+        messageFactory = new SMTPMessageFactory(clientConfiguration, sessionFactory, signerFactory);
+    }
+
+    @TearDown
+    public void tearDown() {
+
+        if (!privateKeyFile.delete()) {
+            privateKeyFile.deleteOnExit();
+        }
+    }
+
+    @Benchmark
+    public MimeMessage forward() throws Exception {
+        Email email = messageParser.parse(new ByteArrayInputStream(data));
+
+        MimeMessage mimeMessage = messageFactory.createMimeMessage(email, new InternetAddress(FROM_ADDRESS),
+                new InternetAddress(TO_ADDRESS));
+
+        return write(mimeMessage);
+    }
+
+    @Benchmark
+    public MimeMessage forwardRaw() throws Exception {
+        MimeMessage mimeMessage = messageFactory.createRawMimeMessage(spooledMessage,
+                new InternetAddress(FROM_ADDRESS), new InternetAddress(TO_ADDRESS));
+
+        return write(mimeMessage);
+    }
+
+    /**
+     * Writes the given message out as the transport would, then releases it.
+     *
+     * @param mimeMessage The message.
+     * @return The message.
+     * @throws Exception If there is an error while writing the message.
+     */
+    private MimeMessage write(MimeMessage mimeMessage) throws Exception {
+
+        try {
+            mimeMessage.saveChanges();
+            mimeMessage.writeTo(ByteStreams.nullOutputStream());
+
+            return mimeMessage;
+
+        } finally {
+            messageFactory.release(mimeMessage);
+        }
+    }
+}
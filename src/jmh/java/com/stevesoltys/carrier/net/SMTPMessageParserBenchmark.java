@@ -0,0 +1,49 @@
+package com.stevesoltys.carrier.net;
+
+import org.openjdk.jmh.annotations.*;
+import tech.blueglacier.email.Email;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for {@link SMTPMessageParser}, which parses every message received by the SMTP server.
+ *
+ * @author Steve Soltys
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SMTPMessageParserBenchmark {
+
+    /**
+     * The message being parsed.
+     */
+    @Param({"PLAIN", "HTML", "ATTACHMENTS", "LARGE"})
+    private MessageCorpus message;
+
+    /**
+     * The parser.
+     */
+    private SMTPMessageParser messageParser;
+
+    /**
+     * The raw message data.
+     */
+    private byte[] data;
+
+    @Setup
+    public void setup() throws IOException {
+        messageParser = new SMTPMessageParser();
+        data = message.load();
+    }
+
+    @Benchmark
+    public Email parse() throws IOException {
+        return messageParser.parse(new ByteArrayInputStream(data));
+    }
+}
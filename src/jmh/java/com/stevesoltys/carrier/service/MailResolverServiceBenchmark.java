@@ -0,0 +1,74 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.collect.TreeMultimap;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.xbill.DNS.DClass;
+import org.xbill.DNS.MXRecord;
+import org.xbill.DNS.Name;
+import org.xbill.DNS.Record;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for choosing an SMTP server from a domain's MX records in {@link MailResolverService}. DNS queries are
+ * not included, since they are answered from the record cache for most messages.
+ *
+ * @author Steve Soltys
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MailResolverServiceBenchmark {
+
+    /**
+     * The number of MX records for the domain.
+     */
+    @Param({"1", "5"})
+    private int recordCount;
+
+    /**
+     * The resolver service.
+     */
+    private MailResolverService resolverService;
+
+    /**
+     * The MX records, as returned by a DNS lookup.
+     */
+    private List<Record> records;
+
+    /**
+     * The decoded MX records.
+     */
+    private TreeMultimap<Integer, String> decodedRecords;
+
+    @Setup
+    public void setup() throws Exception {
+        resolverService = new MailResolverService(new SimpleMeterRegistry());
+        records = new ArrayList<>(recordCount);
+
+        Name domain = Name.fromString("example.net.");
+
+        for (int i = 0; i < recordCount; i++) {
+            Name target = Name.fromString("mx" + i + ".example.net.");
+            records.add(new MXRecord(domain, DClass.IN, 3600, 10 * (i / 2 + 1), target));
+        }
+
+        decodedRecords = resolverService.decodeRecords(records);
+    }
+
+    @Benchmark
+    public List<String> decodeAndOrderRecords() {
+        return resolverService.orderRecords(resolverService.decodeRecords(records));
+    }
+
+    @Benchmark
+    public List<String> orderRecords() {
+        return resolverService.orderRecords(decodedRecords);
+    }
+}
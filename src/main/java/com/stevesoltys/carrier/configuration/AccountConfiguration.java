@@ -4,13 +4,16 @@ import com.stevesoltys.carrier.exception.CarrierConfigurationException;
 import com.stevesoltys.carrier.model.Account;
 import com.stevesoltys.carrier.repository.AccountRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 /**
- * A list of {@link Account}s.
+ * A list of {@link Account}s. Passwords should be given as BCrypt hashes; a password which is not a BCrypt hash is
+ * treated as plain text and hashed when the configuration is loaded, so that it is never kept in memory.
  *
  * @author Steve Soltys
  */
@@ -32,6 +35,16 @@ public class AccountConfiguration extends CarrierConfiguration {
      */
     private static final String PASSWORD_KEY = "password";
 
+    /**
+     * The pattern matching a BCrypt password hash.
+     */
+    private static final Pattern BCRYPT_PATTERN = Pattern.compile("\\A\\$2a?\\$\\d\\d\\$[./0-9A-Za-z]{53}");
+
+    /**
+     * The encoder used for hashing plain text passwords.
+     */
+    private static final BCryptPasswordEncoder PASSWORD_ENCODER = new BCryptPasswordEncoder();
+
     /**
      * The account repository.
      */
@@ -63,6 +76,11 @@ public class AccountConfiguration extends CarrierConfiguration {
 
                 String username = accountConfiguration.get(USERNAME_KEY);
                 String password = accountConfiguration.get(PASSWORD_KEY);
+
+                if (!BCRYPT_PATTERN.matcher(password).matches()) {
+                    password = PASSWORD_ENCODER.encode(password);
+                }
+
                 Account account = new Account(username, password);
 
                 accountRepository.register(account);
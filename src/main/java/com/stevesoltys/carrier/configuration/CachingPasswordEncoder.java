@@ -0,0 +1,82 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PasswordEncoder} which remembers credentials that were recently verified, so that a client making many
+ * requests with the same credentials only pays for the slow password hash once in a while. Only successful matches
+ * are cached, so a wrong password is always checked against the underlying encoder. The cache is keyed by a SHA-256
+ * digest of the password hash and the raw password, so raw passwords are not kept in memory.
+ *
+ * @author Steve Soltys
+ */
+class CachingPasswordEncoder implements PasswordEncoder {
+
+    /**
+     * The maximum number of verified credentials that are cached.
+     */
+    private static final int MAXIMUM_CACHE_SIZE = 1000;
+
+    /**
+     * The amount of time that a verified credential is cached for, in seconds.
+     */
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toSeconds(5);
+
+    /**
+     * The underlying password encoder.
+     */
+    private final PasswordEncoder passwordEncoder;
+
+    /**
+     * The digests of recently verified credentials.
+     */
+    private final Cache<String, Boolean> verifiedCredentials = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHE_SIZE)
+            .expireAfterWrite(CACHE_TTL, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * Creates a caching password encoder.
+     *
+     * @param passwordEncoder The underlying password encoder.
+     */
+    CachingPasswordEncoder(PasswordEncoder passwordEncoder) {
+        this.passwordEncoder = passwordEncoder;
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return passwordEncoder.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+
+        if (rawPassword == null || encodedPassword == null) {
+            return false;
+        }
+
+        String credentialDigest = Hashing.sha256().newHasher()
+                .putString(encodedPassword, StandardCharsets.UTF_8)
+                .putByte((byte) 0)
+                .putString(rawPassword, StandardCharsets.UTF_8)
+                .hash().toString();
+
+        if (verifiedCredentials.getIfPresent(credentialDigest) != null) {
+            return true;
+        }
+
+        if (!passwordEncoder.matches(rawPassword, encodedPassword)) {
+            return false;
+        }
+
+        verifiedCredentials.put(credentialDigest, Boolean.TRUE);
+        return true;
+    }
+}
@@ -0,0 +1,363 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+import com.stevesoltys.carrier.net.CarrierThreads;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Configuration that is used for the outbound delivery queue.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class DeliveryConfiguration extends CarrierConfiguration {
+
+    /**
+     * The delivery configuration key.
+     */
+    private static final String DELIVERY_CONFIGURATION_KEY = "delivery";
+
+    /**
+     * The worker thread count configuration key.
+     */
+    private static final String THREADS_KEY = "threads";
+
+    /**
+     * The queue capacity configuration key.
+     */
+    private static final String QUEUE_CAPACITY_KEY = "queue_capacity";
+
+    /**
+     * The maximum connections per host configuration key.
+     */
+    private static final String CONNECTIONS_PER_HOST_KEY = "connections_per_host";
+
+    /**
+     * The connection idle timeout configuration key.
+     */
+    private static final String IDLE_TIMEOUT_KEY = "idle_timeout";
+
+    /**
+     * The connection timeout configuration key.
+     */
+    private static final String CONNECT_TIMEOUT_KEY = "connect_timeout";
+
+    /**
+     * The socket read timeout configuration key.
+     */
+    private static final String TIMEOUT_KEY = "timeout";
+
+    /**
+     * The reply address batch size configuration key.
+     */
+    private static final String REPLY_ADDRESS_BATCH_SIZE_KEY = "reply_address_batch_size";
+
+    /**
+     * The reply address batch delay configuration key.
+     */
+    private static final String REPLY_ADDRESS_BATCH_DELAY_KEY = "reply_address_batch_delay";
+
+    /**
+     * The retry delay configuration key.
+     */
+    private static final String RETRY_DELAY_KEY = "retry_delay";
+
+    /**
+     * The maximum retry delay configuration key.
+     */
+    private static final String RETRY_MAX_DELAY_KEY = "retry_max_delay";
+
+    /**
+     * The maximum message age configuration key.
+     */
+    private static final String MAX_AGE_KEY = "max_age";
+
+    /**
+     * The virtual threads configuration key.
+     */
+    private static final String VIRTUAL_THREADS_KEY = "virtual_threads";
+
+    /**
+     * The default number of delivery worker threads.
+     */
+    private static final double DEFAULT_THREADS = 16.0;
+
+    /**
+     * The default number of messages that can be waiting for a delivery worker.
+     */
+    private static final double DEFAULT_QUEUE_CAPACITY = 1000.0;
+
+    /**
+     * The default maximum number of open connections to a single SMTP host.
+     */
+    private static final double DEFAULT_CONNECTIONS_PER_HOST = 4.0;
+
+    /**
+     * The default amount of time that an idle connection is kept open, in seconds.
+     */
+    private static final double DEFAULT_IDLE_TIMEOUT = 60.0;
+
+    /**
+     * The default amount of time to wait for a connection to an SMTP host, in seconds.
+     */
+    private static final double DEFAULT_CONNECT_TIMEOUT = 10.0;
+
+    /**
+     * The default amount of time to wait for a response from an SMTP host, in seconds.
+     */
+    private static final double DEFAULT_TIMEOUT = 60.0;
+
+    /**
+     * The default maximum number of reply addresses that are stored in a single batch.
+     */
+    private static final double DEFAULT_REPLY_ADDRESS_BATCH_SIZE = 100.0;
+
+    /**
+     * The default maximum amount of time that a reply address waits for its batch to fill, in milliseconds.
+     */
+    private static final double DEFAULT_REPLY_ADDRESS_BATCH_DELAY = 10.0;
+
+    /**
+     * The default amount of time to wait before the first delivery retry, in seconds.
+     */
+    private static final double DEFAULT_RETRY_DELAY = 60.0;
+
+    /**
+     * The default maximum amount of time to wait between delivery retries, in seconds.
+     */
+    private static final double DEFAULT_RETRY_MAX_DELAY = 3600.0;
+
+    /**
+     * The default amount of time that delivery is retried for before the message is bounced, in hours.
+     */
+    private static final double DEFAULT_MAX_AGE = 96.0;
+
+    /**
+     * The number of delivery worker threads.
+     */
+    private int threads = (int) DEFAULT_THREADS;
+
+    /**
+     * The delivery queue capacity.
+     */
+    private int queueCapacity = (int) DEFAULT_QUEUE_CAPACITY;
+
+    /**
+     * The maximum number of open connections to a single SMTP host.
+     */
+    private int connectionsPerHost = (int) DEFAULT_CONNECTIONS_PER_HOST;
+
+    /**
+     * The amount of time that an idle connection is kept open, in seconds.
+     */
+    private int idleTimeout = (int) DEFAULT_IDLE_TIMEOUT;
+
+    /**
+     * The amount of time to wait for a connection to an SMTP host, in seconds.
+     */
+    private int connectTimeout = (int) DEFAULT_CONNECT_TIMEOUT;
+
+    /**
+     * The amount of time to wait for a response from an SMTP host, in seconds.
+     */
+    private int timeout = (int) DEFAULT_TIMEOUT;
+
+    /**
+     * The maximum number of reply addresses that are stored in a single batch.
+     */
+    private int replyAddressBatchSize = (int) DEFAULT_REPLY_ADDRESS_BATCH_SIZE;
+
+    /**
+     * The maximum amount of time that a reply address waits for its batch to fill, in milliseconds.
+     */
+    private int replyAddressBatchDelay = (int) DEFAULT_REPLY_ADDRESS_BATCH_DELAY;
+
+    /**
+     * The amount of time to wait before the first delivery retry, in seconds.
+     */
+    private int retryDelay = (int) DEFAULT_RETRY_DELAY;
+
+    /**
+     * The maximum amount of time to wait between delivery retries, in seconds.
+     */
+    private int retryMaxDelay = (int) DEFAULT_RETRY_MAX_DELAY;
+
+    /**
+     * The amount of time that delivery is retried for before the message is bounced, in hours.
+     */
+    private int maxAge = (int) DEFAULT_MAX_AGE;
+
+    /**
+     * The virtual threads flag.
+     */
+    private boolean virtualThreads;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void initialize(Map<String, Object> configuration) throws CarrierConfigurationException {
+        configuration = (Map<String, Object>) configuration.getOrDefault(DELIVERY_CONFIGURATION_KEY,
+                Collections.emptyMap());
+
+        try {
+            this.threads = (int) Math.round((double) configuration.getOrDefault(THREADS_KEY, DEFAULT_THREADS));
+            this.queueCapacity = (int) Math.round((double) configuration.getOrDefault(QUEUE_CAPACITY_KEY,
+                    DEFAULT_QUEUE_CAPACITY));
+
+            this.connectionsPerHost = (int) Math.round((double) configuration.getOrDefault(CONNECTIONS_PER_HOST_KEY,
+                    DEFAULT_CONNECTIONS_PER_HOST));
+            this.idleTimeout = (int) Math.round((double) configuration.getOrDefault(IDLE_TIMEOUT_KEY,
+                    DEFAULT_IDLE_TIMEOUT));
+
+            this.connectTimeout = (int) Math.round((double) configuration.getOrDefault(CONNECT_TIMEOUT_KEY,
+                    DEFAULT_CONNECT_TIMEOUT));
+            this.timeout = (int) Math.round((double) configuration.getOrDefault(TIMEOUT_KEY, DEFAULT_TIMEOUT));
+
+            this.replyAddressBatchSize = (int) Math.round((double) configuration.getOrDefault(
+                    REPLY_ADDRESS_BATCH_SIZE_KEY, DEFAULT_REPLY_ADDRESS_BATCH_SIZE));
+            this.replyAddressBatchDelay = (int) Math.round((double) configuration.getOrDefault(
+                    REPLY_ADDRESS_BATCH_DELAY_KEY, DEFAULT_REPLY_ADDRESS_BATCH_DELAY));
+
+            this.retryDelay = (int) Math.round((double) configuration.getOrDefault(RETRY_DELAY_KEY,
+                    DEFAULT_RETRY_DELAY));
+            this.retryMaxDelay = (int) Math.round((double) configuration.getOrDefault(RETRY_MAX_DELAY_KEY,
+                    DEFAULT_RETRY_MAX_DELAY));
+            this.maxAge = (int) Math.round((double) configuration.getOrDefault(MAX_AGE_KEY, DEFAULT_MAX_AGE));
+            this.virtualThreads = (boolean) configuration.getOrDefault(VIRTUAL_THREADS_KEY, false);
+
+        } catch (ClassCastException e) {
+            throw new CarrierConfigurationException("Invalid delivery configuration.");
+        }
+
+        if (threads < 1 || queueCapacity < 1 || connectionsPerHost < 1) {
+            throw new CarrierConfigurationException("The delivery thread count, queue capacity and connections per host"
+                    + " must be positive.");
+        }
+
+        if (replyAddressBatchSize < 1 || replyAddressBatchDelay < 0) {
+            throw new CarrierConfigurationException("The reply address batch size must be positive, and the batch"
+                    + " delay must not be negative.");
+        }
+
+        if (retryDelay < 1 || retryMaxDelay < retryDelay || maxAge < 1) {
+            throw new CarrierConfigurationException("The retry delay and maximum age must be positive, and the maximum"
+                    + " retry delay must not be less than the retry delay.");
+        }
+
+        if (virtualThreads && !CarrierThreads.isVirtualAvailable()) {
+            throw new CarrierConfigurationException("Virtual threads for delivery require Java 21 or later.");
+        }
+    }
+
+    /**
+     * Gets the number of delivery worker threads.
+     *
+     * @return The number of worker threads.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Gets the number of messages that can be waiting for a delivery worker.
+     *
+     * @return The delivery queue capacity.
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    /**
+     * Gets the maximum number of open connections to a single SMTP host.
+     *
+     * @return The maximum number of connections per host.
+     */
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    /**
+     * Gets the amount of time that an idle connection is kept open.
+     *
+     * @return The idle timeout, in seconds.
+     */
+    public int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    /**
+     * Gets the amount of time to wait for a connection to an SMTP host.
+     *
+     * @return The connection timeout, in seconds.
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Gets the amount of time to wait for a response from an SMTP host.
+     *
+     * @return The socket read timeout, in seconds.
+     */
+    public int getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Gets the maximum number of reply addresses that are stored in a single batch.
+     *
+     * @return The reply address batch size.
+     */
+    public int getReplyAddressBatchSize() {
+        return replyAddressBatchSize;
+    }
+
+    /**
+     * Gets the maximum amount of time that a reply address waits for its batch to fill.
+     *
+     * @return The reply address batch delay, in milliseconds.
+     */
+    public int getReplyAddressBatchDelay() {
+        return replyAddressBatchDelay;
+    }
+
+    /**
+     * Gets the amount of time to wait before the first delivery retry. Each later retry waits twice as long as the
+     * one before it, up to the maximum retry delay.
+     *
+     * @return The retry delay, in seconds.
+     */
+    public int getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Gets the maximum amount of time to wait between delivery retries.
+     *
+     * @return The maximum retry delay, in seconds.
+     */
+    public int getRetryMaxDelay() {
+        return retryMaxDelay;
+    }
+
+    /**
+     * Gets the amount of time that delivery is retried for before the message is bounced to its sender.
+     *
+     * @return The maximum message age, in hours.
+     */
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Gets the virtual threads flag. If this is set, the delivery workers are virtual threads instead of platform
+     * threads, so that the worker count can be raised far beyond what platform threads would allow.
+     *
+     * @return The virtual threads flag.
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreads;
+    }
+}
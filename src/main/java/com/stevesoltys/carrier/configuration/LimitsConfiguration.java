@@ -0,0 +1,217 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Configuration that is used for limiting outbound delivery, so that we stay under the limits of the providers we
+ * send to. Each destination domain and each SMTP host has a send rate, in messages per second, and a maximum number of
+ * concurrent deliveries. The defaults can be overridden for individual domains and hosts. A limit of zero means that
+ * there is no limit; a host without a connection limit falls back to the delivery connections per host.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class LimitsConfiguration extends CarrierConfiguration {
+
+    /**
+     * The limits configuration key.
+     */
+    private static final String LIMITS_CONFIGURATION_KEY = "limits";
+
+    /**
+     * The default domain rate configuration key.
+     */
+    private static final String DOMAIN_RATE_KEY = "domain_rate";
+
+    /**
+     * The default domain connections configuration key.
+     */
+    private static final String DOMAIN_CONNECTIONS_KEY = "domain_connections";
+
+    /**
+     * The default host rate configuration key.
+     */
+    private static final String HOST_RATE_KEY = "host_rate";
+
+    /**
+     * The default host connections configuration key.
+     */
+    private static final String HOST_CONNECTIONS_KEY = "host_connections";
+
+    /**
+     * The per-domain overrides configuration key.
+     */
+    private static final String DOMAINS_KEY = "domains";
+
+    /**
+     * The per-host overrides configuration key.
+     */
+    private static final String HOSTS_KEY = "hosts";
+
+    /**
+     * The rate configuration key, within an override.
+     */
+    private static final String RATE_KEY = "rate";
+
+    /**
+     * The connections configuration key, within an override.
+     */
+    private static final String CONNECTIONS_KEY = "connections";
+
+    /**
+     * The default limit, which does not limit anything.
+     */
+    private static final double DEFAULT_LIMIT = 0.0;
+
+    /**
+     * The default limit for a destination domain.
+     */
+    private Limit domainLimit = new Limit(DEFAULT_LIMIT, (int) DEFAULT_LIMIT);
+
+    /**
+     * The default limit for an SMTP host.
+     */
+    private Limit hostLimit = new Limit(DEFAULT_LIMIT, (int) DEFAULT_LIMIT);
+
+    /**
+     * The limits for individual destination domains, keyed by lowercase domain.
+     */
+    private Map<String, Limit> domainLimits = Collections.emptyMap();
+
+    /**
+     * The limits for individual SMTP hosts, keyed by lowercase host.
+     */
+    private Map<String, Limit> hostLimits = Collections.emptyMap();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void initialize(Map<String, Object> configuration) throws CarrierConfigurationException {
+        configuration = (Map<String, Object>) configuration.getOrDefault(LIMITS_CONFIGURATION_KEY,
+                Collections.emptyMap());
+
+        try {
+            this.domainLimit = parseLimit(configuration, DOMAIN_RATE_KEY, DOMAIN_CONNECTIONS_KEY,
+                    new Limit(DEFAULT_LIMIT, (int) DEFAULT_LIMIT));
+            this.hostLimit = parseLimit(configuration, HOST_RATE_KEY, HOST_CONNECTIONS_KEY,
+                    new Limit(DEFAULT_LIMIT, (int) DEFAULT_LIMIT));
+
+            this.domainLimits = parseLimits((Map<String, Map<String, Object>>) configuration.getOrDefault(DOMAINS_KEY,
+                    Collections.emptyMap()), domainLimit);
+            this.hostLimits = parseLimits((Map<String, Map<String, Object>>) configuration.getOrDefault(HOSTS_KEY,
+                    Collections.emptyMap()), hostLimit);
+
+        } catch (NullPointerException | ClassCastException e) {
+            throw new CarrierConfigurationException("Invalid limits configuration.");
+        }
+    }
+
+    /**
+     * Gets the limit for the given destination domain.
+     *
+     * @param domain The destination domain.
+     * @return The limit for the domain.
+     */
+    public Limit getDomainLimit(String domain) {
+        return domainLimits.getOrDefault(domain.toLowerCase(Locale.ROOT), domainLimit);
+    }
+
+    /**
+     * Gets the limit for the given SMTP host.
+     *
+     * @param host The SMTP host.
+     * @return The limit for the host.
+     */
+    public Limit getHostLimit(String host) {
+        return hostLimits.getOrDefault(host.toLowerCase(Locale.ROOT), hostLimit);
+    }
+
+    /**
+     * Parses the overrides for individual domains or hosts.
+     *
+     * @param configuration The overrides, keyed by domain or host.
+     * @param defaultLimit  The limit used for any value that is not overridden.
+     * @return The limits, keyed by lowercase domain or host.
+     * @throws CarrierConfigurationException If one of the limits is invalid.
+     */
+    private static Map<String, Limit> parseLimits(Map<String, Map<String, Object>> configuration, Limit defaultLimit)
+            throws CarrierConfigurationException {
+
+        Map<String, Limit> limits = new HashMap<>();
+
+        for (Map.Entry<String, Map<String, Object>> entry : configuration.entrySet()) {
+            limits.put(entry.getKey().toLowerCase(Locale.ROOT), parseLimit(entry.getValue(), RATE_KEY,
+                    CONNECTIONS_KEY, defaultLimit));
+        }
+
+        return limits;
+    }
+
+    /**
+     * Parses a single limit.
+     *
+     * @param configuration  The configuration containing the limit.
+     * @param rateKey        The rate configuration key.
+     * @param connectionsKey The connections configuration key.
+     * @param defaultLimit   The limit used for any value that is not given.
+     * @return The limit.
+     * @throws CarrierConfigurationException If the limit is negative.
+     */
+    private static Limit parseLimit(Map<String, Object> configuration, String rateKey, String connectionsKey,
+                                    Limit defaultLimit) throws CarrierConfigurationException {
+
+        double rate = (double) configuration.getOrDefault(rateKey, defaultLimit.getRate());
+        int connections = (int) Math.round((double) configuration.getOrDefault(connectionsKey,
+                (double) defaultLimit.getConnections()));
+
+        if (rate < 0 || connections < 0) {
+            throw new CarrierConfigurationException("Delivery rates and connection limits must not be negative.");
+        }
+
+        return new Limit(rate, connections);
+    }
+
+    /**
+     * The send rate and concurrency limit for a destination domain or SMTP host.
+     */
+    public static class Limit {
+
+        /**
+         * The maximum send rate, in messages per second, or zero if the rate is not limited.
+         */
+        private final double rate;
+
+        /**
+         * The maximum number of concurrent deliveries, or zero if they are not limited.
+         */
+        private final int connections;
+
+        Limit(double rate, int connections) {
+            this.rate = rate;
+            this.connections = connections;
+        }
+
+        /**
+         * Gets the maximum send rate.
+         *
+         * @return The rate, in messages per second, or zero if the rate is not limited.
+         */
+        public double getRate() {
+            return rate;
+        }
+
+        /**
+         * Gets the maximum number of concurrent deliveries.
+         *
+         * @return The connection limit, or zero if it is not limited.
+         */
+        public int getConnections() {
+            return connections;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.stevesoltys.carrier.configuration;
+
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The metrics configuration. Every meter is registered with a single Prometheus registry, which is scraped through
+ * the metrics endpoint.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * Creates the meter registry.
+     *
+     * @return The Prometheus meter registry.
+     */
+    @Bean
+    public PrometheusMeterRegistry meterRegistry() {
+        return new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    }
+}
@@ -54,6 +54,36 @@ public class SMTPClientConfiguration extends CarrierConfiguration {
      */
     private static final String START_TLS_KEY = "starttls";
 
+    /**
+     * The debug flag configuration key.
+     */
+    private static final String DEBUG_KEY = "debug";
+
+    /**
+     * The raw forwarding flag configuration key.
+     */
+    private static final String RAW_FORWARDING_KEY = "raw_forwarding";
+
+    /**
+     * The reply address key configuration key.
+     */
+    private static final String REPLY_ADDRESS_KEY = "reply_address_key";
+
+    /**
+     * The reply address lifetime configuration key.
+     */
+    private static final String REPLY_ADDRESS_TTL_KEY = "reply_address_ttl";
+
+    /**
+     * The default number of days that a reply address is valid for.
+     */
+    private static final double DEFAULT_REPLY_ADDRESS_TTL = 90.0;
+
+    /**
+     * The minimum length of the reply address key.
+     */
+    private static final int MINIMUM_REPLY_ADDRESS_KEY_LENGTH = 16;
+
     /**
      * The keystore file location configuration key.
      */
@@ -94,6 +124,27 @@ public class SMTPClientConfiguration extends CarrierConfiguration {
      */
     private boolean ssl;
 
+    /**
+     * The debug flag.
+     */
+    private boolean debug;
+
+    /**
+     * The raw forwarding flag.
+     */
+    private boolean rawForwarding;
+
+    /**
+     * The key used for authenticating stateless reply addresses.
+     */
+    private String replyAddressKey;
+
+    /**
+     * The number of days that a reply address is valid for. A stateless reply address expires this long after it is
+     * generated, and a stored reply address is deleted once it has not been used for this long.
+     */
+    private int replyAddressTtl;
+
     @Override
     @SuppressWarnings("unchecked")
     protected void initialize(Map<String, Object> configuration) throws CarrierConfigurationException {
@@ -110,9 +161,21 @@ public class SMTPClientConfiguration extends CarrierConfiguration {
         this.domain = (String) configuration.getOrDefault(DOMAIN_KEY, null);
         this.startTls = (boolean) configuration.getOrDefault(START_TLS_KEY, true);
         this.ssl = (boolean) configuration.getOrDefault(SSL_KEY, false);
+        this.debug = (boolean) configuration.getOrDefault(DEBUG_KEY, false);
+        this.rawForwarding = (boolean) configuration.getOrDefault(RAW_FORWARDING_KEY, false);
 
-        System.setProperty("mail.smtp.starttls.enable", Boolean.toString(startTls));
-        System.setProperty("mail.smtp.ssl.enable", Boolean.toString(ssl));
+        this.replyAddressKey = (String) configuration.getOrDefault(REPLY_ADDRESS_KEY, null);
+        this.replyAddressTtl = (int) Math.round((double) configuration.getOrDefault(REPLY_ADDRESS_TTL_KEY,
+                DEFAULT_REPLY_ADDRESS_TTL));
+
+        if (replyAddressKey != null && replyAddressKey.length() < MINIMUM_REPLY_ADDRESS_KEY_LENGTH) {
+            throw new CarrierConfigurationException("The reply address key must be at least "
+                    + MINIMUM_REPLY_ADDRESS_KEY_LENGTH + " characters long.");
+        }
+
+        if (replyAddressTtl < 1) {
+            throw new CarrierConfigurationException("The reply address lifetime must be positive.");
+        }
 
         String keystore = (String) configuration.getOrDefault(KEYSTORE_KEY, null);
         String keystorePassword = (String) configuration.getOrDefault(KEYSTORE_PASSWORD_KEY, null);
@@ -147,4 +210,20 @@ public class SMTPClientConfiguration extends CarrierConfiguration {
         return startTls;
     }
 
+    public boolean isDebugEnabled() {
+        return debug;
+    }
+
+    public boolean isRawForwardingEnabled() {
+        return rawForwarding;
+    }
+
+    public String getReplyAddressKey() {
+        return replyAddressKey;
+    }
+
+    public int getReplyAddressTtl() {
+        return replyAddressTtl;
+    }
+
 }
@@ -1,6 +1,7 @@
 package com.stevesoltys.carrier.configuration;
 
 import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+import com.stevesoltys.carrier.net.CarrierThreads;
 import org.springframework.stereotype.Component;
 
 import java.net.InetAddress;
@@ -35,6 +36,26 @@ public class SMTPServerConfiguration extends CarrierConfiguration {
      */
     private static final String FORCE_TLS_KEY = "force_tls";
 
+    /**
+     * The maximum connections configuration key.
+     */
+    private static final String MAX_CONNECTIONS_KEY = "max_connections";
+
+    /**
+     * The virtual threads configuration key.
+     */
+    private static final String VIRTUAL_THREADS_KEY = "virtual_threads";
+
+    /**
+     * The default maximum number of concurrent SMTP connections.
+     */
+    private static final double DEFAULT_MAX_CONNECTIONS = 1000.0;
+
+    /**
+     * The host name that is announced when connecting to other servers.
+     */
+    private String localhost;
+
     /**
      * The server port.
      */
@@ -45,6 +66,16 @@ public class SMTPServerConfiguration extends CarrierConfiguration {
      */
     private boolean forceTls;
 
+    /**
+     * The maximum number of concurrent SMTP connections.
+     */
+    private int maxConnections;
+
+    /**
+     * The virtual threads flag.
+     */
+    private boolean virtualThreads;
+
     @Override
     @SuppressWarnings("unchecked")
     protected void initialize(Map<String, Object> configuration) throws CarrierConfigurationException {
@@ -57,9 +88,7 @@ public class SMTPServerConfiguration extends CarrierConfiguration {
 
         try {
             String defaultLocalhost = InetAddress.getLocalHost().getHostAddress();
-            String localhost = (String) configuration.getOrDefault(LOCALHOST_KEY, defaultLocalhost);
-
-            System.setProperty("mail.smtp.localhost", localhost);
+            this.localhost = (String) configuration.getOrDefault(LOCALHOST_KEY, defaultLocalhost);
 
         } catch (UnknownHostException e) {
             throw new CarrierConfigurationException("Error obtaining localhost configuration: " + e.getMessage());
@@ -67,6 +96,26 @@ public class SMTPServerConfiguration extends CarrierConfiguration {
 
         this.port = (int) Math.round((double) configuration.getOrDefault(PORT_KEY, 25.0));
         this.forceTls = (boolean) configuration.getOrDefault(FORCE_TLS_KEY, true);
+        this.maxConnections = (int) Math.round((double) configuration.getOrDefault(MAX_CONNECTIONS_KEY,
+                DEFAULT_MAX_CONNECTIONS));
+        this.virtualThreads = (boolean) configuration.getOrDefault(VIRTUAL_THREADS_KEY, false);
+
+        if (maxConnections < 1) {
+            throw new CarrierConfigurationException("The maximum number of server connections must be positive.");
+        }
+
+        if (virtualThreads && !CarrierThreads.isVirtualAvailable()) {
+            throw new CarrierConfigurationException("Virtual threads for the server require Java 21 or later.");
+        }
+    }
+
+    /**
+     * Gets the host name that is announced when connecting to other servers.
+     *
+     * @return The localhost address.
+     */
+    public String getLocalhost() {
+        return localhost;
     }
 
     /**
@@ -86,4 +135,24 @@ public class SMTPServerConfiguration extends CarrierConfiguration {
     public boolean isTlsForced() {
         return forceTls;
     }
+
+    /**
+     * Gets the maximum number of concurrent SMTP connections. Further connections are not accepted until one of the
+     * open connections is closed.
+     *
+     * @return The maximum number of connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Gets the virtual threads flag. If this is set, each SMTP session runs on its own virtual thread instead of a
+     * platform thread, so that a large number of slow connections can be held open with little memory.
+     *
+     * @return The virtual threads flag.
+     */
+    public boolean isVirtualThreadsEnabled() {
+        return virtualThreads;
+    }
 }
@@ -0,0 +1,90 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Configuration that is used for the on-disk message spool.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class SpoolConfiguration extends CarrierConfiguration {
+
+    /**
+     * The spool configuration key.
+     */
+    private static final String SPOOL_CONFIGURATION_KEY = "spool";
+
+    /**
+     * The spool directory configuration key.
+     */
+    private static final String DIRECTORY_KEY = "directory";
+
+    /**
+     * The segment size configuration key.
+     */
+    private static final String SEGMENT_SIZE_KEY = "segment_size";
+
+    /**
+     * The default spool directory location.
+     */
+    private static final String DEFAULT_DIRECTORY = CarrierConfigurationLoader.CARRIER_CONFIGURATION_DIRECTORY + "/spool";
+
+    /**
+     * The default segment size, in bytes.
+     */
+    private static final double DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The spool directory.
+     */
+    private File directory = new File(DEFAULT_DIRECTORY);
+
+    /**
+     * The segment size, in bytes.
+     */
+    private int segmentSize = (int) DEFAULT_SEGMENT_SIZE;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void initialize(Map<String, Object> configuration) throws CarrierConfigurationException {
+        configuration = (Map<String, Object>) configuration.getOrDefault(SPOOL_CONFIGURATION_KEY,
+                Collections.emptyMap());
+
+        try {
+            this.directory = new File((String) configuration.getOrDefault(DIRECTORY_KEY, DEFAULT_DIRECTORY));
+            this.segmentSize = (int) Math.round((double) configuration.getOrDefault(SEGMENT_SIZE_KEY,
+                    DEFAULT_SEGMENT_SIZE));
+
+        } catch (ClassCastException e) {
+            throw new CarrierConfigurationException("Invalid spool configuration.");
+        }
+
+        if (segmentSize < 1024) {
+            throw new CarrierConfigurationException("The spool segment size must be at least 1024 bytes.");
+        }
+    }
+
+    /**
+     * Gets the spool directory.
+     *
+     * @return The spool directory.
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Gets the size of a spool segment file, in bytes.
+     *
+     * @return The segment size.
+     */
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+}
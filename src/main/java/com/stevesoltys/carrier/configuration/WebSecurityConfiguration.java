@@ -13,6 +13,8 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.util.Optional;
 
@@ -35,16 +37,32 @@ public class WebSecurityConfiguration extends WebSecurityConfigurerAdapter {
         this.accountRepository = accountRepository;
     }
 
+    /**
+     * Requires authentication for every request. The bulk endpoints are exempt from CSRF protection, since they only
+     * accept JSON request bodies, which a cross-site form cannot send.
+     */
     @Override
     protected void configure(HttpSecurity http) throws Exception {
         http.authorizeRequests()
                 .anyRequest().fullyAuthenticated()
-                .and().httpBasic();
+                .and().httpBasic()
+                .and().csrf().ignoringAntMatchers("/bulk/**");
     }
 
     @Autowired
     public void configureGlobal(AuthenticationManagerBuilder auth) throws Exception {
-        auth.userDetailsService(userDetailsService());
+        auth.userDetailsService(userDetailsService()).passwordEncoder(passwordEncoder());
+    }
+
+    /**
+     * Creates the password encoder. Account passwords are stored as BCrypt hashes, and credentials which were
+     * recently verified are cached so that repeated API requests do not each pay for a BCrypt check.
+     *
+     * @return The password encoder.
+     */
+    @Bean
+    public PasswordEncoder passwordEncoder() {
+        return new CachingPasswordEncoder(new BCryptPasswordEncoder());
     }
 
     @Bean
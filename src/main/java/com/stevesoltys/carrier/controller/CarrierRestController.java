@@ -1,16 +1,36 @@
 package com.stevesoltys.carrier.controller;
 
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.stevesoltys.carrier.exception.CarrierAddressAlreadyExistsException;
 import com.stevesoltys.carrier.exception.CarrierAddressNotFoundException;
+import com.stevesoltys.carrier.exception.CarrierInvalidRequestException;
 import com.stevesoltys.carrier.model.MaskedAddress;
+import com.stevesoltys.carrier.repository.MaskedAddressBatchRepository;
 import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import com.stevesoltys.carrier.service.MaskedAddressService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 /**
  * Contains the REST API for creating, modifying, and deleting {@link MaskedAddress} entries.
@@ -36,14 +56,58 @@ public class CarrierRestController {
      */
     private static final String DELETE_MASKED_ADDRESS = "/delete";
 
+    /**
+     * REST mapping for creating masked address entries in bulk.
+     */
+    private static final String BULK_CREATE_MASKED_ADDRESSES = "/bulk/create";
+
+    /**
+     * REST mapping for deleting masked address entries in bulk.
+     */
+    private static final String BULK_DELETE_MASKED_ADDRESSES = "/bulk/delete";
+
+    /**
+     * REST mapping for listing masked address entries.
+     */
+    private static final String LIST_MASKED_ADDRESSES = "/list";
+
+    /**
+     * The media type for newline delimited JSON.
+     */
+    private static final String NDJSON_MEDIA_TYPE = "application/x-ndjson";
+
+    /**
+     * The number of masked addresses written to the database in a single batch.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * The number of masked addresses fetched from the database in a single page when listing them.
+     */
+    private static final int PAGE_SIZE = 1000;
+
     /**
      * The masked address repository.
      */
     private MaskedAddressRepository maskedAddressRepository;
 
+    /**
+     * The masked address batch repository.
+     */
+    private MaskedAddressBatchRepository maskedAddressBatchRepository;
+
+    /**
+     * The masked address service, whose cached lookups are invalidated when an entry changes.
+     */
+    private MaskedAddressService maskedAddressService;
+
     @Autowired
-    public CarrierRestController(MaskedAddressRepository maskedAddressRepository) {
+    public CarrierRestController(MaskedAddressRepository maskedAddressRepository,
+                                 MaskedAddressBatchRepository maskedAddressBatchRepository,
+                                 MaskedAddressService maskedAddressService) {
         this.maskedAddressRepository = maskedAddressRepository;
+        this.maskedAddressBatchRepository = maskedAddressBatchRepository;
+        this.maskedAddressService = maskedAddressService;
     }
 
     /**
@@ -64,6 +128,7 @@ public class CarrierRestController {
         }
 
         maskedAddressRepository.save(new MaskedAddress(address, destination));
+        maskedAddressService.invalidate(address);
     }
 
     /**
@@ -94,6 +159,175 @@ public class CarrierRestController {
                         new CarrierAddressNotFoundException(address));
 
         maskedAddressRepository.delete(maskedAddress);
+        maskedAddressService.invalidate(address);
+
         return maskedAddress;
     }
+
+    /**
+     * Creates {@link MaskedAddress} entries in bulk. The request body is a JSON array, or newline delimited JSON, of
+     * objects with an 'address' and a 'destination'. Masked addresses that already exist are left unchanged, so a
+     * failed request can be retried as a whole.
+     * <p>
+     * The masked addresses are created in batches of {@value #BATCH_SIZE}, each in its own transaction, while the body
+     * is read. If the body is invalid part-way through, the request fails, but the batches before the invalid item
+     * have already been created.
+     *
+     * @param request The request.
+     * @return The number of requested and created masked addresses.
+     * @throws IOException If there is an error while reading the request body.
+     */
+    @RequestMapping(value = BULK_CREATE_MASKED_ADDRESSES, method = RequestMethod.POST,
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_MEDIA_TYPE})
+    @ResponseBody
+    public Map<String, Integer> createAll(HttpServletRequest request) throws IOException {
+        JsonBatchReader reader = new JsonBatchReader(BATCH_SIZE);
+
+        int created = reader.read(request.getInputStream(), this::toMaskedAddress, batch -> {
+            int count = maskedAddressBatchRepository.createAll(batch);
+
+            maskedAddressService.invalidateAll(batch.stream().map(MaskedAddress::getAddress)
+                    .collect(Collectors.toList()));
+
+            return count;
+        });
+
+        return ImmutableMap.of("requested", reader.getItemCount(), "created", created);
+    }
+
+    /**
+     * Deletes {@link MaskedAddress} entries in bulk. The request body is a JSON array, or newline delimited JSON, of
+     * addresses, given either as strings or as objects with an 'address'. Addresses that do not exist are ignored, so a
+     * failed request can be retried as a whole.
+     * <p>
+     * The masked addresses are deleted in batches of {@value #BATCH_SIZE}, each in its own transaction, while the body
+     * is read. If the body is invalid part-way through, the request fails, but the batches before the invalid item
+     * have already been deleted.
+     *
+     * @param request The request.
+     * @return The number of requested and deleted masked addresses.
+     * @throws IOException If there is an error while reading the request body.
+     */
+    @RequestMapping(value = BULK_DELETE_MASKED_ADDRESSES, method = RequestMethod.POST,
+            consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON_MEDIA_TYPE})
+    @ResponseBody
+    public Map<String, Integer> deleteAll(HttpServletRequest request) throws IOException {
+        JsonBatchReader reader = new JsonBatchReader(BATCH_SIZE);
+
+        int deleted = reader.read(request.getInputStream(), this::toAddress, batch -> {
+            int count = maskedAddressBatchRepository.deleteAll(batch);
+            maskedAddressService.invalidateAll(batch);
+
+            return count;
+        });
+
+        return ImmutableMap.of("requested", reader.getItemCount(), "deleted", deleted);
+    }
+
+    /**
+     * Lists {@link MaskedAddress} entries in order of their address, as newline delimited JSON. The response is
+     * streamed, and fetched from the database one page at a time. A client can continue a listing by passing the last
+     * address it received as 'after'.
+     *
+     * @param after The address after which the listing starts. By default, it starts at the beginning.
+     * @param limit The maximum number of masked addresses to list. By default, every masked address is listed.
+     * @return The streamed masked addresses.
+     */
+    @RequestMapping(LIST_MASKED_ADDRESSES)
+    public ResponseEntity<StreamingResponseBody> list(@RequestParam(value = "after", defaultValue = "") String after,
+                                                      @RequestParam(value = "limit", defaultValue = "0") int limit) {
+
+        if (limit < 0) {
+            throw new CarrierInvalidRequestException("the limit must not be negative");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+
+            String cursor = after;
+            int remaining = limit == 0 ? Integer.MAX_VALUE : limit;
+
+            while (remaining > 0) {
+                int pageSize = Math.min(PAGE_SIZE, remaining);
+
+                List<MaskedAddress> page = maskedAddressRepository.findByAddressGreaterThanOrderByAddress(cursor,
+                        new PageRequest(0, pageSize));
+
+                for (MaskedAddress maskedAddress : page) {
+                    JsonObject item = new JsonObject();
+                    item.addProperty("address", maskedAddress.getAddress());
+                    item.addProperty("destination", maskedAddress.getDestination());
+
+                    writer.write(item.toString());
+                    writer.write('\n');
+                }
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+
+                cursor = page.get(page.size() - 1).getAddress();
+                remaining -= page.size();
+            }
+
+            writer.flush();
+        };
+
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(NDJSON_MEDIA_TYPE)).body(body);
+    }
+
+    /**
+     * Converts an item of a bulk create request to a {@link MaskedAddress}.
+     *
+     * @param element The item.
+     * @return The masked address.
+     */
+    private MaskedAddress toMaskedAddress(JsonElement element) {
+
+        if (!element.isJsonObject()) {
+            throw new CarrierInvalidRequestException("expected an object with an address and a destination");
+        }
+
+        JsonObject object = element.getAsJsonObject();
+
+        return new MaskedAddress(getString(object, "address"), getString(object, "destination"));
+    }
+
+    /**
+     * Converts an item of a bulk delete request to an address.
+     *
+     * @param element The item.
+     * @return The address.
+     */
+    private String toAddress(JsonElement element) {
+
+        if (element.isJsonObject()) {
+            return getString(element.getAsJsonObject(), "address");
+        }
+
+        if (!element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()) {
+            throw new CarrierInvalidRequestException("expected an address");
+        }
+
+        return element.getAsString();
+    }
+
+    /**
+     * Gets a required string property of a JSON object.
+     *
+     * @param object The object.
+     * @param name   The name of the property.
+     * @return The value of the property.
+     */
+    private String getString(JsonObject object, String name) {
+        JsonElement element = object.get(name);
+
+        if (element == null || !element.isJsonPrimitive() || !element.getAsJsonPrimitive().isString()
+                || element.getAsString().isEmpty()) {
+
+            throw new CarrierInvalidRequestException("missing '" + name + "'");
+        }
+
+        return element.getAsString();
+    }
 }
@@ -0,0 +1,119 @@
+package com.stevesoltys.carrier.controller;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+import com.stevesoltys.carrier.exception.CarrierInvalidRequestException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reads the items of a bulk request body in batches, without reading the whole body into memory. The body is either
+ * a JSON array, or newline delimited JSON with one item per line. Each batch is handled as soon as it has been read, so
+ * if the body turns out to be malformed part-way through, the batches before the malformed item have already been
+ * handled.
+ *
+ * @author Steve Soltys
+ */
+class JsonBatchReader {
+
+    /**
+     * The maximum number of items in a batch.
+     */
+    private final int batchSize;
+
+    /**
+     * The parser used for reading each item.
+     */
+    private final JsonParser parser = new JsonParser();
+
+    /**
+     * The number of items that have been read.
+     */
+    private int itemCount;
+
+    /**
+     * Creates a batch reader.
+     *
+     * @param batchSize The maximum number of items in a batch.
+     */
+    JsonBatchReader(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Reads the items from the given stream, and passes them to the given handler in batches.
+     *
+     * @param inputStream The request body.
+     * @param mapper      The function used for converting each JSON item. It may throw a
+     *                    {@link CarrierInvalidRequestException} if an item is invalid.
+     * @param handler     The function used for handling each batch, which returns the number of affected items.
+     * @param <T>         The type of item.
+     * @return The total number of affected items.
+     * @throws IOException If there is an error while reading the stream.
+     */
+    <T> int read(InputStream inputStream, Function<JsonElement, T> mapper, ToIntFunction<List<T>> handler)
+            throws IOException {
+
+        JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        reader.setLenient(true);
+
+        List<T> batch = new ArrayList<>(batchSize);
+        int affectedCount = 0;
+
+        try {
+            boolean array = reader.peek() == JsonToken.BEGIN_ARRAY;
+
+            if (array) {
+                reader.beginArray();
+            }
+
+            while (array ? reader.hasNext() : reader.peek() != JsonToken.END_DOCUMENT) {
+                batch.add(mapper.apply(parser.parse(reader)));
+                itemCount++;
+
+                if (batch.size() == batchSize) {
+                    affectedCount += handler.applyAsInt(batch);
+                    batch.clear();
+                }
+            }
+
+            if (array) {
+                reader.endArray();
+
+                if (reader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new MalformedJsonException("content after the array");
+                }
+            }
+
+        } catch (JsonParseException | IllegalStateException | MalformedJsonException | EOFException e) {
+            throw new CarrierInvalidRequestException("malformed JSON at item " + (itemCount + 1));
+        }
+
+        if (!batch.isEmpty()) {
+            affectedCount += handler.applyAsInt(batch);
+        }
+
+        return affectedCount;
+    }
+
+    /**
+     * Gets the number of items that have been read.
+     *
+     * @return The number of items.
+     */
+    int getItemCount() {
+        return itemCount;
+    }
+}
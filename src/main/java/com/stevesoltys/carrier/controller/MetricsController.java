@@ -0,0 +1,49 @@
+package com.stevesoltys.carrier.controller;
+
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Exposes the application metrics in the Prometheus text format, so that they can be scraped.
+ *
+ * @author Steve Soltys
+ */
+@RestController
+@RequestMapping
+public class MetricsController {
+
+    /**
+     * REST mapping for scraping the metrics.
+     */
+    private static final String METRICS = "/metrics";
+
+    /**
+     * The media type for the Prometheus text format.
+     */
+    private static final String PROMETHEUS_MEDIA_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    /**
+     * The meter registry.
+     */
+    private final PrometheusMeterRegistry meterRegistry;
+
+    @Autowired
+    public MetricsController(PrometheusMeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Gets the current value of every metric.
+     *
+     * @return The metrics, in the Prometheus text format.
+     */
+    @RequestMapping(value = METRICS, method = RequestMethod.GET, produces = PROMETHEUS_MEDIA_TYPE)
+    @ResponseBody
+    public String scrape() {
+        return meterRegistry.scrape();
+    }
+}
@@ -0,0 +1,18 @@
+package com.stevesoltys.carrier.exception;
+
+import com.stevesoltys.carrier.controller.CarrierRestController;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An exception that occurs when a request to the {@link CarrierRestController} is malformed.
+ *
+ * @author Steve Soltys
+ */
+@ResponseStatus(value = HttpStatus.BAD_REQUEST)
+public class CarrierInvalidRequestException extends RuntimeException {
+
+    public CarrierInvalidRequestException(String cause) {
+        super("Invalid request: " + cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.stevesoltys.carrier.exception;
+
+import java.io.IOException;
+
+/**
+ * An exception that occurs when a received message is not a valid MIME message. Unlike other I/O errors, parsing the
+ * message again will fail in the same way.
+ *
+ * @author Steve Soltys
+ */
+public class CarrierMessageParseException extends IOException {
+
+    public CarrierMessageParseException(String cause) {
+        super("Error parsing MIME message: " + cause);
+    }
+}
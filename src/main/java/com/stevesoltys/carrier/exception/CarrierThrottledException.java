@@ -0,0 +1,16 @@
+package com.stevesoltys.carrier.exception;
+
+import javax.mail.MessagingException;
+
+/**
+ * An exception that occurs when a message is not sent to an SMTP host, because the host's connection or rate limits
+ * have been reached. The message should be deferred for a short while, rather than counted as a failed attempt.
+ *
+ * @author Steve Soltys
+ */
+public class CarrierThrottledException extends MessagingException {
+
+    public CarrierThrottledException(String host) {
+        super("Delivery to '" + host + "' is throttled");
+    }
+}
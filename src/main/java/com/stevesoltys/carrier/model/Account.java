@@ -13,10 +13,16 @@ public class Account {
     private final String username;
 
     /**
-     * The password.
+     * The BCrypt hash of the password.
      */
     private final String password;
 
+    /**
+     * Creates an account.
+     *
+     * @param username The username.
+     * @param password The BCrypt hash of the password.
+     */
     public Account(String username, String password) {
         this.username = username;
         this.password = password;
@@ -32,9 +38,9 @@ public class Account {
     }
 
     /**
-     * Gets this account's password.
+     * Gets the BCrypt hash of this account's password.
      *
-     * @return The password.
+     * @return The password hash.
      */
     public String getPassword() {
         return password;
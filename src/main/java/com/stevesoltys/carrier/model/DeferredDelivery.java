@@ -0,0 +1,97 @@
+package com.stevesoltys.carrier.model;
+
+/**
+ * A spooled message whose delivery has failed, and which is waiting to be retried. Every recipient of a deferred
+ * message is forwarded to the same destination domain.
+ *
+ * @author Steve Soltys
+ */
+public class DeferredDelivery {
+
+    /**
+     * The spooled message.
+     */
+    private final SpooledMessage message;
+
+    /**
+     * The destination domain.
+     */
+    private final String domain;
+
+    /**
+     * The number of delivery attempts that have failed.
+     */
+    private final int attempts;
+
+    /**
+     * The time of the first delivery attempt, in milliseconds.
+     */
+    private final long firstAttempt;
+
+    /**
+     * The time at which delivery is retried, in milliseconds.
+     */
+    private final long retryTime;
+
+    /**
+     * Creates a deferred delivery.
+     *
+     * @param message      The spooled message.
+     * @param domain       The destination domain.
+     * @param attempts     The number of delivery attempts that have failed.
+     * @param firstAttempt The time of the first delivery attempt, in milliseconds.
+     * @param retryTime    The time at which delivery is retried, in milliseconds.
+     */
+    public DeferredDelivery(SpooledMessage message, String domain, int attempts, long firstAttempt, long retryTime) {
+        this.message = message;
+        this.domain = domain;
+        this.attempts = attempts;
+        this.firstAttempt = firstAttempt;
+        this.retryTime = retryTime;
+    }
+
+    /**
+     * Gets the spooled message.
+     *
+     * @return The spooled message.
+     */
+    public SpooledMessage getMessage() {
+        return message;
+    }
+
+    /**
+     * Gets the destination domain.
+     *
+     * @return The destination domain.
+     */
+    public String getDomain() {
+        return domain;
+    }
+
+    /**
+     * Gets the number of delivery attempts that have failed.
+     *
+     * @return The number of failed attempts.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    /**
+     * Gets the time of the first delivery attempt.
+     *
+     * @return The time of the first attempt, in milliseconds.
+     */
+    public long getFirstAttempt() {
+        return firstAttempt;
+    }
+
+    /**
+     * Gets the time at which delivery is retried.
+     *
+     * @return The retry time, in milliseconds.
+     */
+    public long getRetryTime() {
+        return retryTime;
+    }
+}
@@ -0,0 +1,49 @@
+package com.stevesoltys.carrier.model;
+
+/**
+ * A stateless 'reply' address. Rather than being stored, the masked address and the original sender are encoded in
+ * the reply address itself, along with an expiry time and a MAC.
+ *
+ * @author Steve Soltys
+ */
+public class EncodedReplyAddress {
+
+    /**
+     * The masked address that the original e-mail was sent to.
+     */
+    private final String maskedAddress;
+
+    /**
+     * The address of the original sender, which replies are forwarded to.
+     */
+    private final String sender;
+
+    /**
+     * Creates an encoded reply address.
+     *
+     * @param maskedAddress The masked address that the original e-mail was sent to.
+     * @param sender        The address of the original sender.
+     */
+    public EncodedReplyAddress(String maskedAddress, String sender) {
+        this.maskedAddress = maskedAddress;
+        this.sender = sender;
+    }
+
+    /**
+     * Gets the masked address that the original e-mail was sent to.
+     *
+     * @return The masked address.
+     */
+    public String getMaskedAddress() {
+        return maskedAddress;
+    }
+
+    /**
+     * Gets the address of the original sender, which replies are forwarded to.
+     *
+     * @return The original sender.
+     */
+    public String getSender() {
+        return sender;
+    }
+}
@@ -0,0 +1,84 @@
+package com.stevesoltys.carrier.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The outcome of forwarding a message along a number of routes. A route either failed temporarily, in which case
+ * forwarding may be retried later, was held back by the limits of the receiving server's host, in which case it should
+ * be retried shortly without counting as a failed attempt, or was rejected permanently by the receiving server, in
+ * which case the message should be bounced. Routes that are in none of the lists were forwarded successfully.
+ *
+ * @author Steve Soltys
+ */
+public class ForwardingResult {
+
+    /**
+     * The routes that the message could not be forwarded along for now.
+     */
+    private final List<Route> failedRoutes = new ArrayList<>();
+
+    /**
+     * The routes that were held back by the limits of the receiving server's host.
+     */
+    private final List<Route> throttledRoutes = new ArrayList<>();
+
+    /**
+     * The routes that the receiving server permanently rejected.
+     */
+    private final List<Route> rejectedRoutes = new ArrayList<>();
+
+    /**
+     * Records a route that the message could not be forwarded along for now.
+     *
+     * @param route The route.
+     */
+    public void addFailedRoute(Route route) {
+        failedRoutes.add(route);
+    }
+
+    /**
+     * Records a route that was held back by the limits of the receiving server's host.
+     *
+     * @param route The route.
+     */
+    public void addThrottledRoute(Route route) {
+        throttledRoutes.add(route);
+    }
+
+    /**
+     * Records a route that the receiving server permanently rejected.
+     *
+     * @param route The route.
+     */
+    public void addRejectedRoute(Route route) {
+        rejectedRoutes.add(route);
+    }
+
+    /**
+     * Gets the routes that the message could not be forwarded along for now.
+     *
+     * @return The failed routes.
+     */
+    public List<Route> getFailedRoutes() {
+        return failedRoutes;
+    }
+
+    /**
+     * Gets the routes that were held back by the limits of the receiving server's host.
+     *
+     * @return The throttled routes.
+     */
+    public List<Route> getThrottledRoutes() {
+        return throttledRoutes;
+    }
+
+    /**
+     * Gets the routes that the receiving server permanently rejected.
+     *
+     * @return The rejected routes.
+     */
+    public List<Route> getRejectedRoutes() {
+        return rejectedRoutes;
+    }
+}
@@ -1,13 +1,10 @@
 package com.stevesoltys.carrier.model;
 
-import javax.mail.internet.AddressException;
 import javax.mail.internet.InternetAddress;
 import javax.persistence.*;
 import java.io.Serializable;
 import java.math.BigInteger;
 import java.security.SecureRandom;
-import java.util.HashMap;
-import java.util.Map;
 
 /**
  * A masked e-mail address.
@@ -17,6 +14,11 @@ import java.util.Map;
 @Entity
 public class MaskedAddress implements Serializable {
 
+    /**
+     * A secure random instance, used for safely generating random tokens.
+     */
+    private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+
     /**
      * The e-mail address used for masking.
      */
@@ -30,19 +32,6 @@ public class MaskedAddress implements Serializable {
     @Column
     private final String destination;
 
-    /**
-     * A map containing the 'reply' addresses. These are the addresses used for replying to the original sender. They
-     * are randomly generated tokens combined with your domain name.
-     */
-    @Column
-    @ElementCollection
-    private final Map<String, String> replyAddresses;
-
-    /**
-     * A secure random instance, used for safely generating random tokens.
-     */
-    private transient final SecureRandom secureRandom;
-
     /**
      * Creates a masked address.
      *
@@ -52,17 +41,11 @@ public class MaskedAddress implements Serializable {
     public MaskedAddress(String address, String destination) {
         this.address = address;
         this.destination = destination;
-
-        this.replyAddresses = new HashMap<>();
-        this.secureRandom = new SecureRandom();
     }
 
     protected MaskedAddress() {
         this.address = null;
         this.destination = null;
-
-        this.replyAddresses = new HashMap<>();
-        this.secureRandom = new SecureRandom();
     }
 
     /**
@@ -71,14 +54,12 @@ public class MaskedAddress implements Serializable {
      *
      * @param domain The domain name.
      * @param fromAddress The 'from' address.
-     * @return A randomly generated e-mail address.
-     * @throws AddressException If there is an issue generating the address.
+     * @return The reply address, containing a randomly generated e-mail address.
      */
-    public InternetAddress generateReplyAddress(String domain, InternetAddress fromAddress) throws AddressException {
-        String generatedAddress = new BigInteger(130, secureRandom).toString(32) + "@" + domain;
-        replyAddresses.put(generatedAddress, fromAddress.getAddress());
+    public ReplyAddress generateReplyAddress(String domain, InternetAddress fromAddress) {
+        String generatedAddress = new BigInteger(130, SECURE_RANDOM).toString(32) + "@" + domain;
 
-        return new InternetAddress(generatedAddress);
+        return new ReplyAddress(generatedAddress, this, fromAddress.getAddress());
     }
 
     /**
@@ -90,16 +71,6 @@ public class MaskedAddress implements Serializable {
         return address;
     }
 
-    /**
-     * Gets the reply address map. These are the addresses used for replying to the original sender. They are randomly
-     * generated tokens combined with your domain name.
-     *
-     * @return The reply address map.
-     */
-    public Map<String, String> getReplyAddresses() {
-        return replyAddresses;
-    }
-
     /**
      * Gets the address that e-mails will be forwarded to.
      *
@@ -0,0 +1,163 @@
+package com.stevesoltys.carrier.model;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * A 'reply' address. These are the addresses used for replying to the original sender of an e-mail that was forwarded
+ * through a {@link MaskedAddress}. They are randomly generated tokens combined with your domain name. Since the address
+ * is assigned rather than generated by the database, this tracks whether it has been persisted, so that saving a new
+ * reply address is a single insert. Reply addresses stored by earlier versions, in a map on each masked address, are
+ * carried over at startup by the {@code ReplyAddressMigrationService}.
+ *
+ * @author Steve Soltys
+ */
+@Entity
+@Table(indexes = {
+        @Index(name = "reply_address_masked_address_index", columnList = "masked_address"),
+        @Index(name = "reply_address_last_used_index", columnList = "last_used")
+})
+public class ReplyAddress implements Persistable<String>, Serializable {
+
+    /**
+     * The generated e-mail address.
+     */
+    @Column
+    @Id
+    private final String address;
+
+    /**
+     * The masked address that the original e-mail was sent to.
+     */
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "masked_address", nullable = false)
+    @OnDelete(action = OnDeleteAction.CASCADE)
+    private final MaskedAddress maskedAddress;
+
+    /**
+     * The address of the original sender, which replies are forwarded to.
+     */
+    @Column(nullable = false)
+    private final String sender;
+
+    /**
+     * The time at which this reply address was generated.
+     */
+    @Column(nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private final Date created;
+
+    /**
+     * The time at which this reply address was last used for forwarding a reply, or generated if it has not been used.
+     * Reply addresses which have not been used for longer than their lifetime are deleted.
+     */
+    @Column(name = "last_used")
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date lastUsed;
+
+    /**
+     * A flag indicating whether this reply address has been persisted.
+     */
+    @Transient
+    private transient boolean persisted;
+
+    /**
+     * Creates a reply address.
+     *
+     * @param address       The generated e-mail address.
+     * @param maskedAddress The masked address that the original e-mail was sent to.
+     * @param sender        The address of the original sender.
+     */
+    public ReplyAddress(String address, MaskedAddress maskedAddress, String sender) {
+        this.address = address;
+        this.maskedAddress = maskedAddress;
+        this.sender = sender;
+        this.created = new Date();
+        this.lastUsed = created;
+    }
+
+    protected ReplyAddress() {
+        this.address = null;
+        this.maskedAddress = null;
+        this.sender = null;
+        this.created = null;
+    }
+
+    @Override
+    public String getId() {
+        return address;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    /**
+     * Marks this reply address as persisted, once it has been loaded or saved.
+     */
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+
+    /**
+     * Gets the generated e-mail address.
+     *
+     * @return The generated e-mail address.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Gets the masked address that the original e-mail was sent to.
+     *
+     * @return The masked address.
+     */
+    public MaskedAddress getMaskedAddress() {
+        return maskedAddress;
+    }
+
+    /**
+     * Gets the address of the original sender, which replies are forwarded to.
+     *
+     * @return The original sender.
+     */
+    public String getSender() {
+        return sender;
+    }
+
+    /**
+     * Gets the time at which this reply address was generated.
+     *
+     * @return The creation time.
+     */
+    public Date getCreated() {
+        return created;
+    }
+
+    /**
+     * Gets the time at which this reply address was last used for forwarding a reply.
+     *
+     * @return The last used time, or the creation time if it has not been used.
+     */
+    public Date getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Sets the time at which this reply address was last used for forwarding a reply.
+     *
+     * @param lastUsed The last used time.
+     */
+    public void setLastUsed(Date lastUsed) {
+        this.lastUsed = lastUsed;
+    }
+}
@@ -0,0 +1,150 @@
+package com.stevesoltys.carrier.model;
+
+import java.util.Locale;
+
+/**
+ * The route for a recipient address, resolved once when the recipient is accepted and then used for delivery.
+ *
+ * @author Steve Soltys
+ */
+public class Route {
+
+    /**
+     * The kind of route.
+     */
+    private final Kind kind;
+
+    /**
+     * The recipient address that this route was resolved for.
+     */
+    private final String address;
+
+    /**
+     * The masked address.
+     */
+    private final String maskedAddress;
+
+    /**
+     * The destination of the masked address.
+     */
+    private final String destination;
+
+    /**
+     * The address that a reply is forwarded to, or null if this is not a reply route.
+     */
+    private final String replyTarget;
+
+    /**
+     * Creates a route.
+     *
+     * @param kind          The kind of route.
+     * @param address       The recipient address that the route was resolved for.
+     * @param maskedAddress The masked address.
+     * @param destination   The destination of the masked address.
+     * @param replyTarget   The address that a reply is forwarded to, or null if this is not a reply route.
+     */
+    public Route(Kind kind, String address, String maskedAddress, String destination, String replyTarget) {
+        this.kind = kind;
+        this.address = address;
+        this.maskedAddress = maskedAddress;
+        this.destination = destination;
+        this.replyTarget = replyTarget;
+    }
+
+    /**
+     * Checks whether a message from the given sender may be forwarded along this route. Anyone may send to a masked
+     * address, but only the destination of a masked address may send replies through it.
+     *
+     * @param from The address of the sender.
+     * @return A flag indicating whether the sender may use this route.
+     */
+    public boolean accepts(String from) {
+        return kind == Kind.MASKED || destination.equalsIgnoreCase(from);
+    }
+
+    /**
+     * Gets the kind of route.
+     *
+     * @return The kind of route.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the recipient address that this route was resolved for.
+     *
+     * @return The recipient address.
+     */
+    public String getAddress() {
+        return address;
+    }
+
+    /**
+     * Gets the masked address.
+     *
+     * @return The masked address.
+     */
+    public String getMaskedAddress() {
+        return maskedAddress;
+    }
+
+    /**
+     * Gets the destination of the masked address.
+     *
+     * @return The destination.
+     */
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Gets the address that a reply is forwarded to.
+     *
+     * @return The reply target, or null if this is not a reply route.
+     */
+    public String getReplyTarget() {
+        return replyTarget;
+    }
+
+    /**
+     * Gets the address that a message is forwarded to along this route.
+     *
+     * @return The destination for incoming mail, or the reply target for a reply.
+     */
+    public String getForwardAddress() {
+        return kind == Kind.MASKED ? destination : replyTarget;
+    }
+
+    /**
+     * Gets the domain of the address that a message is forwarded to along this route.
+     *
+     * @return The lowercase domain of the forward address.
+     */
+    public String getForwardDomain() {
+        String forwardAddress = getForwardAddress();
+
+        return forwardAddress.substring(forwardAddress.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The kinds of routes.
+     */
+    public enum Kind {
+
+        /**
+         * Incoming mail for a masked address, forwarded to its destination.
+         */
+        MASKED,
+
+        /**
+         * A reply sent to a stored {@link ReplyAddress}, forwarded to the original sender.
+         */
+        REPLY,
+
+        /**
+         * A reply sent to an {@link EncodedReplyAddress}, forwarded to the original sender.
+         */
+        ENCODED_REPLY
+    }
+}
@@ -0,0 +1,164 @@
+package com.stevesoltys.carrier.model;
+
+import javax.mail.internet.SharedInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message that has been accepted and written to the message spool, along with its SMTP envelope.
+ *
+ * @author Steve Soltys
+ */
+public class SpooledMessage {
+
+    /**
+     * The spool identifier.
+     */
+    private final long id;
+
+    /**
+     * The envelope sender.
+     */
+    private final String from;
+
+    /**
+     * The envelope recipients.
+     */
+    private final List<String> recipients;
+
+    /**
+     * The raw message data.
+     */
+    private final ByteBuffer data;
+
+    /**
+     * Creates a spooled message.
+     *
+     * @param id         The spool identifier.
+     * @param from       The envelope sender.
+     * @param recipients The envelope recipients.
+     * @param data       The raw message data.
+     */
+    public SpooledMessage(long id, String from, List<String> recipients, ByteBuffer data) {
+        this.id = id;
+        this.from = from;
+        this.recipients = Collections.unmodifiableList(recipients);
+        this.data = data.asReadOnlyBuffer();
+    }
+
+    /**
+     * Opens a stream over the raw message data. Every call returns a new, independent stream. The stream is a
+     * {@link SharedInputStream}, so a {@link javax.mail.internet.MimeMessage} parsed from it refers to the spooled
+     * data instead of copying its content.
+     *
+     * @return The input stream.
+     */
+    public InputStream openStream() {
+        return new ByteBufferInputStream(data.duplicate());
+    }
+
+    /**
+     * Gets the spool identifier.
+     *
+     * @return The spool identifier.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gets the envelope sender.
+     *
+     * @return The envelope sender.
+     */
+    public String getFrom() {
+        return from;
+    }
+
+    /**
+     * Gets the envelope recipients.
+     *
+     * @return The envelope recipients.
+     */
+    public List<String> getRecipients() {
+        return recipients;
+    }
+
+    /**
+     * Gets the size of the raw message data.
+     *
+     * @return The size, in bytes.
+     */
+    public int getSize() {
+        return data.remaining();
+    }
+
+    /**
+     * An input stream which reads from a {@link ByteBuffer}.
+     */
+    private static class ByteBufferInputStream extends InputStream implements SharedInputStream {
+
+        /**
+         * The buffer being read.
+         */
+        private final ByteBuffer buffer;
+
+        /**
+         * The position in the buffer at which this stream starts.
+         */
+        private final int start;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.start = buffer.position();
+        }
+
+        @Override
+        public long getPosition() {
+            return buffer.position() - start;
+        }
+
+        @Override
+        public InputStream newStream(long start, long end) {
+            ByteBuffer slice = buffer.duplicate();
+
+            slice.limit(end == -1 ? buffer.limit() : this.start + (int) end);
+            slice.position(this.start + (int) start);
+
+            return new ByteBufferInputStream(slice);
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            length = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, length);
+
+            return length;
+        }
+
+        @Override
+        public long skip(long count) {
+            int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
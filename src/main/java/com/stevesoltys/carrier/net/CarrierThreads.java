@@ -0,0 +1,171 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates the threads used for SMTP sessions and outbound deliveries, either as platform threads or as virtual threads.
+ * Virtual threads only exist on Java 21 and later, while Carrier is built for Java 8, so they are created through
+ * reflection when the running JVM supports them.
+ *
+ * @author Steve Soltys
+ */
+public final class CarrierThreads {
+
+    /**
+     * The method used for creating a virtual thread builder, or null if virtual threads are not available.
+     */
+    private static final Method OF_VIRTUAL = findMethod(Thread.class, "ofVirtual");
+
+    /**
+     * The method used for naming the threads of a thread builder.
+     */
+    private static final Method BUILDER_NAME = findMethod(findClass("java.lang.Thread$Builder"), "name", String.class,
+            long.class);
+
+    /**
+     * The method used for creating a thread factory from a thread builder.
+     */
+    private static final Method BUILDER_FACTORY = findMethod(findClass("java.lang.Thread$Builder"), "factory");
+
+    /**
+     * The method used for creating an executor which starts a new thread for each task.
+     */
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = findMethod(Executors.class,
+            "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    /**
+     * A flag indicating whether the running JVM supports virtual threads. They are not usable on Java 19 and 20 unless
+     * preview features are enabled.
+     */
+    private static final boolean VIRTUAL_AVAILABLE = checkVirtualAvailable();
+
+    private CarrierThreads() {
+    }
+
+    /**
+     * Checks whether the running JVM supports virtual threads.
+     *
+     * @return A flag indicating whether virtual threads are available.
+     */
+    public static boolean isVirtualAvailable() {
+        return VIRTUAL_AVAILABLE;
+    }
+
+    /**
+     * Creates a thread factory. Platform threads are daemon threads.
+     *
+     * @param namePrefix The thread name prefix, which is followed by a sequence number.
+     * @param virtual    A flag indicating whether the factory creates virtual threads.
+     * @return The thread factory.
+     * @throws IllegalStateException If virtual threads were requested but are not available.
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix, boolean virtual) {
+
+        if (!virtual) {
+            return new ThreadFactoryBuilder().setNameFormat(namePrefix + "%d").setDaemon(true).build();
+        }
+
+        if (!isVirtualAvailable()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later.");
+        }
+
+        try {
+            Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix, 0L);
+
+            return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a virtual thread factory.", e);
+        }
+    }
+
+    /**
+     * Creates an executor which runs each task on its own thread. Platform threads are reused once their task has
+     * finished, while virtual threads are cheap enough that a new one is started for every task.
+     *
+     * @param namePrefix The thread name prefix, which is followed by a sequence number.
+     * @param virtual    A flag indicating whether the executor uses virtual threads.
+     * @return The executor.
+     * @throws IllegalStateException If virtual threads were requested but are not available.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix, boolean virtual) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix, virtual);
+
+        if (!virtual) {
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Could not create a virtual thread executor.", e);
+        }
+    }
+
+    /**
+     * Checks whether virtual threads can be created on the running JVM.
+     *
+     * @return A flag indicating whether virtual threads are available.
+     */
+    private static boolean checkVirtualAvailable() {
+
+        if (OF_VIRTUAL == null || BUILDER_NAME == null || BUILDER_FACTORY == null
+                || NEW_THREAD_PER_TASK_EXECUTOR == null) {
+
+            return false;
+        }
+
+        try {
+            OF_VIRTUAL.invoke(null);
+            return true;
+
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Finds a class by name.
+     *
+     * @param name The class name.
+     * @return The class, or null if it does not exist.
+     */
+    private static Class<?> findClass(String name) {
+
+        try {
+            return Class.forName(name);
+
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Finds a public method.
+     *
+     * @param type           The class declaring the method, or null.
+     * @param name           The method name.
+     * @param parameterTypes The parameter types.
+     * @return The method, or null if it does not exist.
+     */
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+
+        if (type == null) {
+            return null;
+        }
+
+        try {
+            return type.getMethod(name, parameterTypes);
+
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
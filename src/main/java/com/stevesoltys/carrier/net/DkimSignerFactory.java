@@ -0,0 +1,275 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.markenwerk.utils.mail.dkim.Canonicalization;
+import net.markenwerk.utils.mail.dkim.DkimAcceptanceException;
+import net.markenwerk.utils.mail.dkim.DkimException;
+import net.markenwerk.utils.mail.dkim.DkimMessage;
+import net.markenwerk.utils.mail.dkim.DkimSigner;
+import net.markenwerk.utils.mail.dkim.DkimSigningException;
+import net.markenwerk.utils.mail.dkim.SigningAlgorithm;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A factory for {@link DkimSigner}s using the {@link SMTPClientConfiguration}. The private key is parsed once and
+ * reloaded only when the key file changes, and signers are shared between messages with the same identity.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class DkimSignerFactory {
+
+    /**
+     * The maximum number of signers that are kept, keyed by identity and private key.
+     */
+    private static final int MAXIMUM_SIGNERS = 1000;
+
+    /**
+     * The minimum amount of time between checks of the key file for changes, in milliseconds.
+     */
+    private static final long KEY_CHECK_INTERVAL = 10000;
+
+    /**
+     * The client configuration.
+     */
+    private final SMTPClientConfiguration clientConfiguration;
+
+    /**
+     * The signers, keyed by identity and the private key they sign with. A signer for a key which has since been
+     * replaced is never looked up again, even if it is added after the reload cleared the cache.
+     */
+    private final Cache<SignerKey, DkimSigner> signers = CacheBuilder.newBuilder().maximumSize(MAXIMUM_SIGNERS)
+            .build();
+
+    /**
+     * The loaded private key.
+     */
+    private volatile LoadedKey loadedKey;
+
+    /**
+     * The timer for signing messages.
+     */
+    private final Timer signTimer;
+
+    @Autowired
+    public DkimSignerFactory(SMTPClientConfiguration clientConfiguration, MeterRegistry meterRegistry) {
+        this.clientConfiguration = clientConfiguration;
+
+        this.signTimer = Timer.builder("carrier.dkim.sign")
+                .description("The time taken to sign an outgoing message, which happens while it is being sent")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Gets a signer for the given identity.
+     *
+     * @param identity The signing identity, usually the 'from' address.
+     * @return The signer.
+     * @throws IOException              If the private key file could not be read.
+     * @throws GeneralSecurityException If the private key could not be parsed.
+     * @throws DkimException            If the signer could not be created.
+     */
+    public DkimSigner getSigner(String identity) throws IOException, GeneralSecurityException, DkimException {
+        LoadedKey key = getLoadedKey();
+
+        try {
+            return signers.get(new SignerKey(identity, key), () -> createSigner(key.privateKey, identity));
+
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof DkimException) {
+                throw (DkimException) cause;
+            }
+
+            throw new GeneralSecurityException("Error creating DKIM signer: " + cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Gets the private key, loading it if it has not been loaded yet or if the key file has changed since it was last
+     * loaded.
+     *
+     * @return The loaded private key.
+     * @throws IOException              If the private key file could not be read.
+     * @throws GeneralSecurityException If the private key could not be parsed.
+     */
+    private LoadedKey getLoadedKey() throws IOException, GeneralSecurityException {
+        LoadedKey key = loadedKey;
+        long now = System.currentTimeMillis();
+
+        if (key != null && now - key.checked < KEY_CHECK_INTERVAL) {
+            return key;
+        }
+
+        synchronized (this) {
+            key = loadedKey;
+            File keyFile = new File(clientConfiguration.getPrivateKeyFile());
+
+            if (key != null && key.file.equals(keyFile) && key.lastModified == keyFile.lastModified()) {
+                key.checked = now;
+                return key;
+            }
+
+            long lastModified = keyFile.lastModified();
+
+            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(Files.readAllBytes(keyFile.toPath()));
+            RSAPrivateKey privateKey = (RSAPrivateKey) KeyFactory.getInstance("RSA").generatePrivate(keySpec);
+
+            loadedKey = new LoadedKey(keyFile, lastModified, privateKey, now);
+            signers.invalidateAll();
+
+            return loadedKey;
+        }
+    }
+
+    /**
+     * Creates a signer for the given identity.
+     *
+     * @param privateKey The private key.
+     * @param identity   The signing identity.
+     * @return The signer.
+     * @throws DkimException If the signer could not be created.
+     */
+    private DkimSigner createSigner(RSAPrivateKey privateKey, String identity) throws DkimException {
+        DkimSigner dkimSigner = new SynchronizedDkimSigner(clientConfiguration.getDomain(),
+                clientConfiguration.getDkimSelector(), privateKey, signTimer);
+
+        dkimSigner.setIdentity(identity);
+        dkimSigner.setHeaderCanonicalization(Canonicalization.SIMPLE);
+        dkimSigner.setBodyCanonicalization(Canonicalization.RELAXED);
+
+        dkimSigner.setSigningAlgorithm(SigningAlgorithm.SHA256_WITH_RSA);
+        dkimSigner.setLengthParam(true);
+        dkimSigner.setZParam(false);
+
+        return dkimSigner;
+    }
+
+    /**
+     * A {@link DkimSigner} which can be shared between threads. The signer holds its own signature and digest
+     * instances, so signing is serialized. The time spent signing is recorded, excluding any time spent waiting for
+     * another thread.
+     * <p>
+     * Creating a signer looks up the signature and digest algorithms from the security providers and initializes the
+     * signature with the private key. Sharing a signer means that this is done once per identity, rather than again
+     * for every message. The lock is only shared by messages with the same identity, which is the sender's address, so
+     * messages from different senders are still signed in parallel. A message only waits when the same sender is
+     * signing another message, and then for no longer than one RSA signature.
+     */
+    private static class SynchronizedDkimSigner extends DkimSigner {
+
+        /**
+         * The timer for signing messages.
+         */
+        private final Timer signTimer;
+
+        SynchronizedDkimSigner(String signingDomain, String selector, RSAPrivateKey privateKey, Timer signTimer)
+                throws DkimException {
+
+            super(signingDomain, selector, privateKey);
+            this.signTimer = signTimer;
+        }
+
+        @Override
+        protected synchronized String sign(DkimMessage message)
+                throws DkimAcceptanceException, DkimSigningException {
+
+            long startTime = System.nanoTime();
+
+            try {
+                return super.sign(message);
+
+            } finally {
+                signTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * The key of a cached signer: its identity, and the private key it signs with. Private keys are compared by
+     * identity, since a reload always creates a new {@link LoadedKey}.
+     */
+    private static class SignerKey {
+
+        /**
+         * The signing identity.
+         */
+        private final String identity;
+
+        /**
+         * The loaded private key.
+         */
+        private final LoadedKey key;
+
+        SignerKey(String identity, LoadedKey key) {
+            this.identity = identity;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+
+            if (!(other instanceof SignerKey)) {
+                return false;
+            }
+
+            SignerKey signerKey = (SignerKey) other;
+            return identity.equals(signerKey.identity) && key == signerKey.key;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * identity.hashCode() + System.identityHashCode(key);
+        }
+    }
+
+    /**
+     * A private key, along with the file it was loaded from.
+     */
+    private static class LoadedKey {
+
+        /**
+         * The key file.
+         */
+        private final File file;
+
+        /**
+         * The modification time of the key file when it was loaded.
+         */
+        private final long lastModified;
+
+        /**
+         * The private key.
+         */
+        private final RSAPrivateKey privateKey;
+
+        /**
+         * The time at which the key file was last checked for changes, in milliseconds.
+         */
+        private volatile long checked;
+
+        LoadedKey(File file, long lastModified, RSAPrivateKey privateKey, long checked) {
+            this.file = file;
+            this.lastModified = lastModified;
+            this.privateKey = privateKey;
+            this.checked = checked;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
+
+import javax.activation.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A read-only {@link DataSource} whose content is kept in memory up to a threshold, and in a temporary file beyond
+ * it. The content can be read any number of times, which is needed when a message is written more than once, such as
+ * when it is signed and then sent, or retried against another host.
+ *
+ * @author Steve Soltys
+ */
+class FileBackedDataSource implements DataSource {
+
+    /**
+     * The name of this data source.
+     */
+    private final String name;
+
+    /**
+     * The content type of this data source.
+     */
+    private final String contentType;
+
+    /**
+     * The buffered content.
+     */
+    private final FileBackedOutputStream content;
+
+    /**
+     * Creates a data source by copying the given stream.
+     *
+     * @param name        The name of the data source.
+     * @param contentType The content type of the data source.
+     * @param inputStream The stream to copy the content from.
+     * @param threshold   The amount of content that is kept in memory before it is moved to a temporary file, in bytes.
+     * @throws IOException If there is an error while copying the content.
+     */
+    FileBackedDataSource(String name, String contentType, InputStream inputStream, int threshold) throws IOException {
+        this.name = name;
+        this.contentType = contentType;
+        this.content = new FileBackedOutputStream(threshold);
+
+        try {
+            ByteStreams.copy(inputStream, content);
+            content.close();
+
+        } catch (IOException e) {
+            content.reset();
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return content.asByteSource().openStream();
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("This data source is read-only.");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Releases the buffered content, deleting the temporary file if there is one.
+     */
+    void release() {
+
+        try {
+            content.reset();
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.stevesoltys.carrier.net;
+
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.internet.MimeMessage;
+import java.io.InputStream;
+
+/**
+ * A {@link MimeMessage} which is written out with its body exactly as it was received. Only the headers can be
+ * changed; saving changes does not rebuild the body or its headers from the parsed content.
+ *
+ * @author Steve Soltys
+ */
+class RawMimeMessage extends MimeMessage {
+
+    /**
+     * Creates a message by parsing the headers from the given stream. If the stream is a
+     * {@link javax.mail.internet.SharedInputStream}, the body is not copied.
+     *
+     * @param session     The session.
+     * @param inputStream The raw message data.
+     * @throws MessagingException If there is an error while parsing the headers.
+     */
+    RawMimeMessage(Session session, InputStream inputStream) throws MessagingException {
+        super(session, inputStream);
+    }
+
+    @Override
+    public void saveChanges() throws MessagingException {
+        saved = true;
+    }
+}
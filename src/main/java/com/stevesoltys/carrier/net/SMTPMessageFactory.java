@@ -1,11 +1,9 @@
 package com.stevesoltys.carrier.net;
 
-import com.google.common.io.ByteStreams;
 import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
-import net.markenwerk.utils.mail.dkim.Canonicalization;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import com.sun.mail.smtp.SMTPMessage;
 import net.markenwerk.utils.mail.dkim.DkimMessage;
-import net.markenwerk.utils.mail.dkim.DkimSigner;
-import net.markenwerk.utils.mail.dkim.SigningAlgorithm;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import tech.blueglacier.email.Attachment;
@@ -15,14 +13,17 @@ import javax.activation.DataHandler;
 import javax.activation.DataSource;
 import javax.mail.*;
 import javax.mail.internet.InternetAddress;
+import javax.mail.internet.InternetHeaders;
 import javax.mail.internet.MimeBodyPart;
 import javax.mail.internet.MimeMessage;
 import javax.mail.internet.MimeMultipart;
 import javax.mail.util.ByteArrayDataSource;
 import java.io.BufferedReader;
-import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -35,14 +36,57 @@ import java.util.stream.Collectors;
 @Component
 public class SMTPMessageFactory {
 
+    /**
+     * The amount of attachment data that is kept in memory before it is moved to a temporary file, in bytes.
+     */
+    private static final int ATTACHMENT_THRESHOLD = 256 * 1024;
+
+    /**
+     * The headers which are removed from a raw message before it is forwarded. These are either invalidated by the
+     * rewritten headers, or could reveal the address that is being masked.
+     */
+    private static final String[] REMOVED_RAW_HEADERS = {
+            "DKIM-Signature", "Reply-To", "Sender", "Cc", "Bcc", "Return-Path", "Received", "Delivered-To",
+            "X-Original-To"
+    };
+
+    /**
+     * The local part of the address that bounces are sent from.
+     */
+    private static final String BOUNCE_LOCAL_PART = "mailer-daemon";
+
+    /**
+     * The subject of a bounce.
+     */
+    private static final String BOUNCE_SUBJECT = "Undelivered Mail Returned to Sender";
+
+    /**
+     * The envelope sender of a bounce, which is empty so that a bounce is never bounced in turn.
+     */
+    private static final String BOUNCE_ENVELOPE_FROM = "<>";
+
     /**
      * The client configuration.
      */
     private final SMTPClientConfiguration clientConfiguration;
 
+    /**
+     * The session factory.
+     */
+    private final SMTPSessionFactory sessionFactory;
+
+    /**
+     * The DKIM signer factory.
+     */
+    private final DkimSignerFactory signerFactory;
+
     @Autowired
-    public SMTPMessageFactory(SMTPClientConfiguration clientConfiguration) {
+    public SMTPMessageFactory(SMTPClientConfiguration clientConfiguration, SMTPSessionFactory sessionFactory,
+                              DkimSignerFactory signerFactory) {
+
         this.clientConfiguration = clientConfiguration;
+        this.sessionFactory = sessionFactory;
+        this.signerFactory = signerFactory;
     }
 
     /**
@@ -66,6 +110,132 @@ public class SMTPMessageFactory {
         }
     }
 
+    /**
+     * Creates a MIME message used for forwarding the given spooled message without rebuilding it. The original body
+     * and headers are kept as they were received, apart from the rewritten 'from' and 'to' headers and the headers in
+     * {@link #REMOVED_RAW_HEADERS}. The {@link SMTPClientConfiguration} is utilized to decide whether or not this
+     * function will sign the message using DKIM.
+     *
+     * @param spooledMessage The spooled message.
+     * @param fromAddress    The 'from' address.
+     * @param toAddress      The 'to' address.
+     * @return The MIME message.
+     * @throws Exception If there is an error while creating the MIME message.
+     */
+    public MimeMessage createRawMimeMessage(SpooledMessage spooledMessage, InternetAddress fromAddress,
+                                           InternetAddress toAddress) throws Exception {
+
+        MimeMessage message = new RawMimeMessage(sessionFactory.getDefaultSession(), spooledMessage.openStream());
+
+        for (String header : REMOVED_RAW_HEADERS) {
+            message.removeHeader(header);
+        }
+
+        message.setFrom(fromAddress);
+        message.setRecipient(Message.RecipientType.TO, toAddress);
+
+        if (clientConfiguration.isDkimEnabled()) {
+            return new DkimMessage(message, signerFactory.getSigner(fromAddress.getAddress()));
+        }
+
+        return message;
+    }
+
+    /**
+     * Creates a bounce for the given spooled message, telling its sender that it could not be delivered to the given
+     * recipients. The bounce contains the headers of the original message, but not its body. The
+     * {@link SMTPClientConfiguration} is utilized to decide whether or not this function will sign the message using
+     * DKIM.
+     *
+     * @param spooledMessage The spooled message.
+     * @param recipients     The recipients that the message could not be delivered to.
+     * @return The MIME message.
+     * @throws Exception If there is an error while creating the MIME message.
+     */
+    public MimeMessage createBounceMessage(SpooledMessage spooledMessage, List<String> recipients) throws Exception {
+        InternetAddress fromAddress = new InternetAddress(BOUNCE_LOCAL_PART + "@" + clientConfiguration.getDomain());
+
+        SMTPMessage message = new SMTPMessage(sessionFactory.getDefaultSession());
+        message.setFrom(fromAddress);
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress(spooledMessage.getFrom()));
+        message.setSubject(BOUNCE_SUBJECT);
+
+        BodyPart textBodyPart = new MimeBodyPart();
+        textBodyPart.setText("Your message could not be delivered to the following recipients, and will not be"
+                + " retried:\n\n" + String.join("\n", recipients) + "\n");
+
+        StringBuilder originalHeaders = new StringBuilder();
+
+        try (InputStream inputStream = spooledMessage.openStream()) {
+            Enumeration<?> headerLines = new InternetHeaders(inputStream).getAllHeaderLines();
+
+            while (headerLines.hasMoreElements()) {
+                originalHeaders.append(headerLines.nextElement()).append("\r\n");
+            }
+        }
+
+        BodyPart headersBodyPart = new MimeBodyPart();
+        headersBodyPart.setDataHandler(new DataHandler(new ByteArrayDataSource(
+                originalHeaders.toString().getBytes(StandardCharsets.US_ASCII), "text/rfc822-headers")));
+
+        Multipart multipart = new MimeMultipart();
+        multipart.addBodyPart(textBodyPart);
+        multipart.addBodyPart(headersBodyPart);
+        message.setContent(multipart);
+
+        if (clientConfiguration.isDkimEnabled()) {
+            DkimMessage signedMessage = new DkimMessage(message, signerFactory.getSigner(fromAddress.getAddress()));
+            signedMessage.setEnvelopeFrom(BOUNCE_ENVELOPE_FROM);
+
+            return signedMessage;
+        }
+
+        message.setEnvelopeFrom(BOUNCE_ENVELOPE_FROM);
+        return message;
+    }
+
+    /**
+     * Releases the attachment data held by a message created by this factory, deleting any temporary files. The
+     * message can not be written after it has been released. Signed and raw messages do not hold any attachment data
+     * of their own.
+     *
+     * @param message The message.
+     */
+    public void release(MimeMessage message) {
+
+        if (message instanceof DkimMessage || message instanceof RawMimeMessage) {
+            return;
+        }
+
+        try {
+            Object content = message.getContent();
+
+            if (content instanceof Multipart) {
+                release((Multipart) content);
+            }
+
+        } catch (IOException | MessagingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Releases the attachment data held by the given multipart.
+     *
+     * @param multipart The multipart.
+     * @throws MessagingException If there is an error while reading the body parts.
+     */
+    private void release(Multipart multipart) throws MessagingException {
+
+        for (int i = 0; i < multipart.getCount(); i++) {
+            DataSource source = multipart.getBodyPart(i).getDataHandler().getDataSource();
+
+            if (source instanceof FileBackedDataSource) {
+                ((FileBackedDataSource) source).release();
+            }
+        }
+    }
+
     /**
      * Creates an unsigned MIME message used for forwarding the given incoming e-mail.
      *
@@ -78,8 +248,7 @@ public class SMTPMessageFactory {
     private MimeMessage createUnsignedMimeMessage(Email email, InternetAddress fromAddress, InternetAddress toAddress)
             throws Exception {
 
-        Session session = Session.getDefaultInstance(System.getProperties());
-        MimeMessage message = new MimeMessage(session);
+        MimeMessage message = new MimeMessage(sessionFactory.getDefaultSession());
 
         message.setFrom(fromAddress);
         message.addRecipient(Message.RecipientType.TO, toAddress);
@@ -138,8 +307,8 @@ public class SMTPMessageFactory {
             BodyPart attachmentBodyPart = new MimeBodyPart();
             attachmentBodyPart.setFileName(attachment.getAttachmentName());
 
-            byte[] data = ByteStreams.toByteArray(attachment.getIs());
-            DataSource source = new ByteArrayDataSource(data, "application/octet-stream");
+            DataSource source = new FileBackedDataSource(attachment.getAttachmentName(), "application/octet-stream",
+                    attachment.getIs(), ATTACHMENT_THRESHOLD);
             attachmentBodyPart.setDataHandler(new DataHandler(source));
 
             attachments.add(attachmentBodyPart);
@@ -160,20 +329,13 @@ public class SMTPMessageFactory {
     private MimeMessage createSignedMimeMessage(Email email, InternetAddress fromAddress, InternetAddress toAddress)
             throws Exception {
 
-        String signingDomain = clientConfiguration.getDomain();
-        String selector = clientConfiguration.getDkimSelector();
-
-        File privateKeyFile = new File(clientConfiguration.getPrivateKeyFile());
-        DkimSigner dkimSigner = new DkimSigner(signingDomain, selector, privateKeyFile);
+        MimeMessage unsignedMessage = createUnsignedMimeMessage(email, fromAddress, toAddress);
 
-        dkimSigner.setIdentity(fromAddress.getAddress());
-        dkimSigner.setHeaderCanonicalization(Canonicalization.SIMPLE);
-        dkimSigner.setBodyCanonicalization(Canonicalization.RELAXED);
+        try {
+            return new DkimMessage(unsignedMessage, signerFactory.getSigner(fromAddress.getAddress()));
 
-        dkimSigner.setSigningAlgorithm(SigningAlgorithm.SHA256_WITH_RSA);
-        dkimSigner.setLengthParam(true);
-        dkimSigner.setZParam(false);
-
-        return new DkimMessage(createUnsignedMimeMessage(email, fromAddress, toAddress), dkimSigner);
+        } finally {
+            release(unsignedMessage);
+        }
     }
 }
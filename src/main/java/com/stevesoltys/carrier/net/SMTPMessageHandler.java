@@ -1,92 +1,69 @@
 package com.stevesoltys.carrier.net;
 
-import com.stevesoltys.carrier.exception.CarrierForwardingException;
-import com.stevesoltys.carrier.model.MaskedAddress;
-import com.stevesoltys.carrier.repository.MaskedAddressRepository;
-import com.stevesoltys.carrier.service.MailForwardingService;
-import org.apache.james.mime4j.MimeException;
-import org.apache.james.mime4j.codec.DecodeMonitor;
-import org.apache.james.mime4j.message.DefaultBodyDescriptorBuilder;
-import org.apache.james.mime4j.parser.ContentHandler;
-import org.apache.james.mime4j.parser.MimeStreamParser;
-import org.apache.james.mime4j.stream.BodyDescriptorBuilder;
-import org.apache.james.mime4j.stream.MimeConfig;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Component;
-import org.subethamail.smtp.helper.SimpleMessageListener;
-import org.subethamail.smtp.server.SMTPServer;
-import tech.blueglacier.email.Email;
-import tech.blueglacier.parser.CustomContentHandler;
+import com.stevesoltys.carrier.model.Route;
+import org.subethamail.smtp.MessageHandler;
+import org.subethamail.smtp.RejectException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 /**
- * A message handler for an {@link SMTPServer} instance.
+ * A message handler for a single mail transaction. The route for each recipient is resolved once, when it is
+ * accepted, and the message data is handed to the {@link SMTPMessageHandlerFactory} once for all of the recipients.
  *
  * @author Steve Soltys
  */
-@Component
-public class SMTPMessageHandler implements SimpleMessageListener {
+class SMTPMessageHandler implements MessageHandler {
 
     /**
-     * The masked address repository.
+     * The message handler factory.
      */
-    private final MaskedAddressRepository maskedAddressRepository;
+    private final SMTPMessageHandlerFactory handlerFactory;
 
     /**
-     * The mail forwarding service.
+     * The routes for the accepted recipients, keyed by recipient, in the order they were accepted.
      */
-    private final MailForwardingService mailForwardingService;
+    private final Map<String, Route> routes = new LinkedHashMap<>();
 
-    @Autowired
-    public SMTPMessageHandler(MaskedAddressRepository maskedAddressRepository,
-                              MailForwardingService mailForwardingService) {
+    /**
+     * The address of the sender.
+     */
+    private String from;
 
-        this.maskedAddressRepository = maskedAddressRepository;
-        this.mailForwardingService = mailForwardingService;
+    /**
+     * Creates a message handler.
+     *
+     * @param handlerFactory The message handler factory.
+     */
+    SMTPMessageHandler(SMTPMessageHandlerFactory handlerFactory) {
+        this.handlerFactory = handlerFactory;
     }
 
     @Override
-    public boolean accept(String from, String to) {
-
-        Optional<MaskedAddress> replyOptional = maskedAddressRepository.findByReplyAddress(to);
-
-        if(replyOptional.isPresent() && from.equalsIgnoreCase(replyOptional.get().getDestination())) {
-            return true;
-        }
-
-        return maskedAddressRepository.findByAddress(to).isPresent();
+    public void from(String from) throws RejectException {
+        this.from = from;
     }
 
     @Override
-    public void deliver(String from, String to, InputStream data) throws IOException {
-
-        ContentHandler contentHandler = new CustomContentHandler();
+    public void recipient(String recipient) throws RejectException {
+        Optional<Route> route = handlerFactory.accept(from, recipient);
 
-        MimeConfig mime4jParserConfig = new MimeConfig();
-        BodyDescriptorBuilder bodyDescriptorBuilder = new DefaultBodyDescriptorBuilder();
-
-        MimeStreamParser mime4jParser = new MimeStreamParser(mime4jParserConfig, DecodeMonitor.SILENT,
-                bodyDescriptorBuilder);
-        mime4jParser.setContentDecoding(true);
-        mime4jParser.setContentHandler(contentHandler);
-
-        try {
-            mime4jParser.parse(data);
-
-        } catch (MimeException e) {
-            throw new IOException("Error parsing MIME message: " + e.getMessage());
+        if (!route.isPresent()) {
+            throw new RejectException(553, "<" + recipient + "> Recipient address rejected");
         }
 
-        Email email = ((CustomContentHandler) contentHandler).getEmail();
+        routes.put(recipient, route.get());
+    }
 
-        try {
-            mailForwardingService.forward(to, email);
+    @Override
+    public void data(InputStream data) throws RejectException, IOException {
+        handlerFactory.deliver(from, routes, data);
+    }
 
-        } catch (CarrierForwardingException e) {
-            e.printStackTrace();
-        }
+    @Override
+    public void done() {
     }
 }
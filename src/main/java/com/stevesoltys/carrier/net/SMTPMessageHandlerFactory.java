@@ -0,0 +1,153 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.FileBackedOutputStream;
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import com.stevesoltys.carrier.repository.MessageSpoolRepository;
+import com.stevesoltys.carrier.service.MailDeliveryService;
+import com.stevesoltys.carrier.service.MaskedAddressService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.subethamail.smtp.MessageContext;
+import org.subethamail.smtp.MessageHandler;
+import org.subethamail.smtp.MessageHandlerFactory;
+import org.subethamail.smtp.server.SMTPServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates an {@link SMTPMessageHandler} for each mail transaction received by an {@link SMTPServer} instance. The
+ * message data for a transaction is received and spooled once, no matter how many recipients it has, along with the
+ * routes that were resolved when the recipients were accepted.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class SMTPMessageHandlerFactory implements MessageHandlerFactory {
+
+    /**
+     * The amount of message data that is staged in memory before it is moved to a temporary file, in bytes.
+     */
+    private static final int STAGING_THRESHOLD = 256 * 1024;
+
+    /**
+     * The masked address service.
+     */
+    private final MaskedAddressService maskedAddressService;
+
+    /**
+     * The message spool repository.
+     */
+    private final MessageSpoolRepository spoolRepository;
+
+    /**
+     * The mail delivery service.
+     */
+    private final MailDeliveryService mailDeliveryService;
+
+    /**
+     * The counter for accepted recipients.
+     */
+    private final Counter acceptedRecipients;
+
+    /**
+     * The counter for rejected recipients.
+     */
+    private final Counter rejectedRecipients;
+
+    /**
+     * The timer for writing incoming messages to the spool.
+     */
+    private final Timer spoolTimer;
+
+    /**
+     * The distribution of incoming message sizes.
+     */
+    private final DistributionSummary messageSizes;
+
+    @Autowired
+    public SMTPMessageHandlerFactory(MaskedAddressService maskedAddressService,
+                                     MessageSpoolRepository spoolRepository, MailDeliveryService mailDeliveryService,
+                                     MeterRegistry meterRegistry) {
+
+        this.maskedAddressService = maskedAddressService;
+        this.spoolRepository = spoolRepository;
+        this.mailDeliveryService = mailDeliveryService;
+
+        this.acceptedRecipients = meterRegistry.counter("carrier.smtp.recipients", "result", "accepted");
+        this.rejectedRecipients = meterRegistry.counter("carrier.smtp.recipients", "result", "rejected");
+
+        this.spoolTimer = Timer.builder("carrier.smtp.spool")
+                .description("The time taken to receive and spool an incoming message")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        this.messageSizes = DistributionSummary.builder("carrier.smtp.message.size")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1024L)
+                .maximumExpectedValue(64L * 1024 * 1024)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public MessageHandler create(MessageContext context) {
+        return new SMTPMessageHandler(this);
+    }
+
+    /**
+     * Resolves the route for a recipient, and checks whether the given sender may use it.
+     *
+     * @param from The address of the sender.
+     * @param to   The recipient address.
+     * @return An optional, possibly containing the route. This is empty if the recipient should be rejected.
+     */
+    Optional<Route> accept(String from, String to) {
+        Optional<Route> route = maskedAddressService.resolve(to).filter(resolvedRoute -> resolvedRoute.accepts(from));
+
+        (route.isPresent() ? acceptedRecipients : rejectedRecipients).increment();
+        return route;
+    }
+
+    /**
+     * Writes an incoming message to the message spool once, with every accepted recipient, and queues it for
+     * delivery. The message is only acknowledged to the client once this function returns, at which point it is
+     * safely on disk.
+     *
+     * @param from   The address of the sender.
+     * @param routes The routes for the accepted recipients, keyed by recipient.
+     * @param data   The message data.
+     * @throws IOException If there is an error while spooling the message.
+     */
+    void deliver(String from, Map<String, Route> routes, InputStream data) throws IOException {
+
+        long startTime = System.nanoTime();
+        FileBackedOutputStream stagedData = new FileBackedOutputStream(STAGING_THRESHOLD);
+
+        try {
+            ByteStreams.copy(data, stagedData);
+            stagedData.close();
+
+            SpooledMessage message = spoolRepository.append(from, new ArrayList<>(routes.keySet()),
+                    stagedData.asByteSource());
+
+            spoolTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            messageSizes.record(message.getSize());
+
+            mailDeliveryService.submit(message, routes);
+
+        } finally {
+            stagedData.reset();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.stevesoltys.carrier.net;
+
+import com.stevesoltys.carrier.exception.CarrierMessageParseException;
+import org.apache.james.mime4j.MimeException;
+import org.apache.james.mime4j.MimeIOException;
+import org.apache.james.mime4j.codec.DecodeMonitor;
+import org.apache.james.mime4j.message.DefaultBodyDescriptorBuilder;
+import org.apache.james.mime4j.parser.ContentHandler;
+import org.apache.james.mime4j.parser.MimeStreamParser;
+import org.apache.james.mime4j.stream.BodyDescriptorBuilder;
+import org.apache.james.mime4j.stream.MimeConfig;
+import org.springframework.stereotype.Component;
+import tech.blueglacier.email.Email;
+import tech.blueglacier.parser.CustomContentHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A parser for the raw messages received by the SMTP server.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class SMTPMessageParser {
+
+    /**
+     * Parses the given raw message.
+     *
+     * @param data The raw message data.
+     * @return The parsed e-mail.
+     * @throws CarrierMessageParseException If the message is not a valid MIME message.
+     * @throws IOException                  If there is an error while reading the message.
+     */
+    public Email parse(InputStream data) throws IOException {
+
+        ContentHandler contentHandler = new CustomContentHandler();
+
+        MimeConfig mime4jParserConfig = new MimeConfig();
+        BodyDescriptorBuilder bodyDescriptorBuilder = new DefaultBodyDescriptorBuilder();
+
+        MimeStreamParser mime4jParser = new MimeStreamParser(mime4jParserConfig, DecodeMonitor.SILENT,
+                bodyDescriptorBuilder);
+        mime4jParser.setContentDecoding(true);
+        mime4jParser.setContentHandler(contentHandler);
+
+        try {
+            mime4jParser.parse(data);
+
+        } catch (MimeException | MimeIOException e) {
+            throw new CarrierMessageParseException(e.getMessage());
+        }
+
+        return ((CustomContentHandler) contentHandler).getEmail();
+    }
+}
@@ -3,15 +3,20 @@ package com.stevesoltys.carrier.net;
 import com.stevesoltys.carrier.configuration.CarrierConfigurationLoader;
 import com.stevesoltys.carrier.configuration.SMTPServerConfiguration;
 import com.stevesoltys.carrier.exception.CarrierConfigurationException;
+import com.stevesoltys.carrier.service.MailDeliveryService;
+import com.stevesoltys.carrier.service.ReplyAddressMigrationService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
-import org.subethamail.smtp.helper.SimpleMessageListenerAdapter;
 import org.subethamail.smtp.server.SMTPServer;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
 
 /**
- * A wrapper for {@link SMTPServer} using the {@link SMTPServerConfiguration}.
+ * A wrapper for {@link SMTPServer} using the {@link SMTPServerConfiguration}. Each SMTP session runs on its own
+ * thread, which is a virtual thread if they are enabled in the configuration.
  *
  * @author Steve Soltys
  */
@@ -24,36 +29,76 @@ public class SMTPServerWrapper {
     private CarrierConfigurationLoader configurationLoader;
 
     /**
-     * The SMTP message handler.
+     * The SMTP message handler factory.
      */
-    private final SMTPMessageHandler messageHandler;
+    private final SMTPMessageHandlerFactory messageHandlerFactory;
 
     /**
      * The server configuration.
      */
     private final SMTPServerConfiguration serverConfiguration;
 
+    /**
+     * The mail delivery service.
+     */
+    private final MailDeliveryService deliveryService;
+
+    /**
+     * The reply address migration service.
+     */
+    private final ReplyAddressMigrationService migrationService;
+
+    /**
+     * The SMTP server. This is created once the configuration has been loaded.
+     */
+    private SMTPServer smtpServer;
+
+    /**
+     * The executor used for running SMTP sessions.
+     */
+    private ExecutorService sessionExecutor;
+
     @Autowired
-    public SMTPServerWrapper(SMTPMessageHandler messageHandler, SMTPServerConfiguration serverConfiguration,
-                             CarrierConfigurationLoader configurationLoader) {
+    public SMTPServerWrapper(SMTPMessageHandlerFactory messageHandlerFactory,
+                             SMTPServerConfiguration serverConfiguration,
+                             CarrierConfigurationLoader configurationLoader, MailDeliveryService deliveryService,
+                             ReplyAddressMigrationService migrationService) {
 
-        this.messageHandler = messageHandler;
+        this.messageHandlerFactory = messageHandlerFactory;
         this.serverConfiguration = serverConfiguration;
         this.configurationLoader = configurationLoader;
+        this.deliveryService = deliveryService;
+        this.migrationService = migrationService;
     }
 
     /**
-     * Starts the SMTP server.
+     * Starts the SMTP server, once any legacy reply addresses have been carried over.
      */
     @PostConstruct
-    public void start() throws CarrierConfigurationException {
+    public void start() throws CarrierConfigurationException, IOException {
         configurationLoader.run();
+        migrationService.migrate();
+        deliveryService.start();
+
+        sessionExecutor = CarrierThreads.newThreadPerTaskExecutor("carrier-smtp-session-",
+                serverConfiguration.isVirtualThreadsEnabled());
 
-        SMTPServer smtpServer = new SMTPServer(new SimpleMessageListenerAdapter(messageHandler));
+        smtpServer = new SMTPServer(messageHandlerFactory, null, sessionExecutor);
         smtpServer.setRequireTLS(serverConfiguration.isTlsForced());
         smtpServer.setPort(serverConfiguration.getPort());
-
-        System.setProperty("mail.debug", "true");
+        smtpServer.setMaxConnections(serverConfiguration.getMaxConnections());
         smtpServer.start();
     }
+
+    /**
+     * Stops the SMTP server, closing any open sessions.
+     */
+    @PreDestroy
+    public void stop() {
+
+        if (smtpServer != null) {
+            smtpServer.stop();
+            sessionExecutor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,106 @@
+package com.stevesoltys.carrier.net;
+
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPServerConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.mail.Session;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A factory for JavaMail {@link Session}s using the {@link SMTPClientConfiguration}. Every session gets its own
+ * {@link Properties}, so concurrent deliveries to different hosts never share mutable state.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class SMTPSessionFactory {
+
+    /**
+     * The client configuration.
+     */
+    private final SMTPClientConfiguration clientConfiguration;
+
+    /**
+     * The server configuration.
+     */
+    private final SMTPServerConfiguration serverConfiguration;
+
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
+    /**
+     * The session used for composing messages. This is created once the configuration has been loaded.
+     */
+    private volatile Session defaultSession;
+
+    @Autowired
+    public SMTPSessionFactory(SMTPClientConfiguration clientConfiguration,
+                              SMTPServerConfiguration serverConfiguration,
+                              DeliveryConfiguration deliveryConfiguration) {
+
+        this.clientConfiguration = clientConfiguration;
+        this.serverConfiguration = serverConfiguration;
+        this.deliveryConfiguration = deliveryConfiguration;
+    }
+
+    /**
+     * Gets the session which is not bound to a host, used for composing messages.
+     *
+     * @return The session.
+     */
+    public Session getDefaultSession() {
+        Session session = defaultSession;
+
+        if (session == null) {
+            session = Session.getInstance(createProperties());
+            defaultSession = session;
+        }
+
+        return session;
+    }
+
+    /**
+     * Creates a session for delivering mail to the given SMTP host. Connections made through the session give up
+     * after the configured timeouts, so that an unresponsive host does not hold up delivery to the next one.
+     *
+     * @param host The SMTP host.
+     * @return The session.
+     */
+    public Session createSession(String host) {
+        Properties properties = createProperties();
+        properties.setProperty("mail.smtp.host", host);
+
+        long connectTimeout = TimeUnit.SECONDS.toMillis(deliveryConfiguration.getConnectTimeout());
+        long timeout = TimeUnit.SECONDS.toMillis(deliveryConfiguration.getTimeout());
+
+        properties.setProperty("mail.smtp.connectiontimeout", Long.toString(connectTimeout));
+        properties.setProperty("mail.smtp.timeout", Long.toString(timeout));
+
+        return Session.getInstance(properties);
+    }
+
+    /**
+     * Creates the session properties shared by every session.
+     *
+     * @return The session properties.
+     */
+    private Properties createProperties() {
+        Properties properties = new Properties();
+
+        properties.setProperty("mail.smtp.starttls.enable", Boolean.toString(clientConfiguration.isStartTlsEnabled()));
+        properties.setProperty("mail.smtp.ssl.enable", Boolean.toString(clientConfiguration.isSslEnabled()));
+        properties.setProperty("mail.debug", Boolean.toString(clientConfiguration.isDebugEnabled()));
+
+        if (serverConfiguration.getLocalhost() != null) {
+            properties.setProperty("mail.smtp.localhost", serverConfiguration.getLocalhost());
+        }
+
+        return properties;
+    }
+}
@@ -0,0 +1,280 @@
+package com.stevesoltys.carrier.net;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.configuration.LimitsConfiguration;
+import com.stevesoltys.carrier.exception.CarrierThrottledException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * A pool of connected SMTP {@link Transport}s, keyed by the host that they are connected to. Reusing a connection
+ * avoids the TCP handshake, EHLO and STARTTLS negotiation that {@link Transport#send(javax.mail.Message)} performs for
+ * every message. The number of connections to each host, and the rate at which messages are sent to it, are limited
+ * as configured in the {@link LimitsConfiguration}.
+ *
+ * @author Steve Soltys
+ */
+@Component
+public class SMTPTransportPool {
+
+    /**
+     * The amount of time a connection may sit idle before it is checked with a NOOP when borrowed, in milliseconds.
+     */
+    private static final long HEALTH_CHECK_INTERVAL = 5000;
+
+    /**
+     * The interval at which idle connections are evicted, in seconds.
+     */
+    private static final long EVICTION_INTERVAL = 10;
+
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
+    /**
+     * The limits configuration.
+     */
+    private final LimitsConfiguration limitsConfiguration;
+
+    /**
+     * The session factory.
+     */
+    private final SMTPSessionFactory sessionFactory;
+
+    /**
+     * The connection pools, keyed by host.
+     */
+    private final Map<String, HostPool> hostPools = new ConcurrentHashMap<>();
+
+    /**
+     * The executor used for evicting idle connections.
+     */
+    private ScheduledExecutorService evictionExecutor;
+
+    @Autowired
+    public SMTPTransportPool(DeliveryConfiguration deliveryConfiguration, LimitsConfiguration limitsConfiguration,
+                             SMTPSessionFactory sessionFactory) {
+
+        this.deliveryConfiguration = deliveryConfiguration;
+        this.limitsConfiguration = limitsConfiguration;
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Starts evicting idle connections.
+     */
+    @PostConstruct
+    public void start() {
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("carrier-transport-eviction").setDaemon(true).build());
+
+        evictionExecutor.scheduleWithFixedDelay(this::evictIdleConnections, EVICTION_INTERVAL, EVICTION_INTERVAL,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Closes every pooled connection.
+     */
+    @PreDestroy
+    public void stop() {
+        evictionExecutor.shutdownNow();
+
+        for (HostPool hostPool : hostPools.values()) {
+            PooledTransport pooledTransport;
+
+            while ((pooledTransport = hostPool.idleTransports.pollFirst()) != null) {
+                close(pooledTransport.transport);
+            }
+        }
+    }
+
+    /**
+     * Sends the given message to the given envelope recipients through the given host, in a single SMTP transaction,
+     * using a pooled connection if one is available. This never waits for the host's limits: if every connection to
+     * the host is in use, or the host's send rate has been reached, the message is not sent, so that the delivery
+     * worker is free to deliver mail for other hosts in the meantime.
+     *
+     * @param host       The SMTP host.
+     * @param message    The message.
+     * @param recipients The envelope recipients.
+     * @throws CarrierThrottledException If the host's connection or rate limits have been reached.
+     * @throws MessagingException        If there is an error while sending the message.
+     */
+    public void send(String host, MimeMessage message, Address[] recipients) throws MessagingException {
+        HostPool hostPool = hostPools.computeIfAbsent(host, this::createHostPool);
+
+        if (!hostPool.permits.tryAcquire()) {
+            throw new CarrierThrottledException(host);
+        }
+
+        PooledTransport pooledTransport = null;
+
+        try {
+            if (hostPool.rateLimiter != null && !hostPool.rateLimiter.tryAcquire()) {
+                throw new CarrierThrottledException(host);
+            }
+
+            pooledTransport = borrow(hostPool);
+
+            message.saveChanges();
+            pooledTransport.transport.sendMessage(message, recipients);
+
+            pooledTransport.lastUsed = System.currentTimeMillis();
+            hostPool.idleTransports.offerFirst(pooledTransport);
+
+        } catch (MessagingException | RuntimeException e) {
+
+            if (pooledTransport != null) {
+                close(pooledTransport.transport);
+            }
+
+            throw e;
+
+        } finally {
+            hostPool.permits.release();
+        }
+    }
+
+    /**
+     * Creates the pool for the given host, with the host's limits.
+     *
+     * @param host The SMTP host.
+     * @return The pool for the host.
+     */
+    private HostPool createHostPool(String host) {
+        LimitsConfiguration.Limit limit = limitsConfiguration.getHostLimit(host);
+        int maximumConnections = limit.getConnections() > 0 ? limit.getConnections()
+                : deliveryConfiguration.getConnectionsPerHost();
+
+        return new HostPool(sessionFactory.createSession(host), maximumConnections,
+                limit.getRate() > 0 ? RateLimiter.create(limit.getRate()) : null);
+    }
+
+    /**
+     * Takes a healthy connection to the given host from the pool, or opens a new one. Connections that have been idle
+     * for a while are checked with a NOOP before they are reused.
+     *
+     * @param hostPool The pool for the host.
+     * @return The connection.
+     * @throws MessagingException If there is an error while opening a new connection.
+     */
+    private PooledTransport borrow(HostPool hostPool) throws MessagingException {
+        PooledTransport pooledTransport;
+
+        while ((pooledTransport = hostPool.idleTransports.pollFirst()) != null) {
+            long idleTime = System.currentTimeMillis() - pooledTransport.lastUsed;
+
+            if (idleTime < HEALTH_CHECK_INTERVAL || pooledTransport.transport.isConnected()) {
+                return pooledTransport;
+            }
+
+            close(pooledTransport.transport);
+        }
+
+        Transport transport = hostPool.session.getTransport("smtp");
+        transport.connect();
+
+        return new PooledTransport(transport);
+    }
+
+    /**
+     * Closes connections which have been idle for longer than the configured idle timeout.
+     */
+    private void evictIdleConnections() {
+        long idleTimeout = TimeUnit.SECONDS.toMillis(deliveryConfiguration.getIdleTimeout());
+        long now = System.currentTimeMillis();
+
+        for (HostPool hostPool : hostPools.values()) {
+
+            for (Iterator<PooledTransport> iterator = hostPool.idleTransports.iterator(); iterator.hasNext(); ) {
+                PooledTransport pooledTransport = iterator.next();
+
+                if (now - pooledTransport.lastUsed >= idleTimeout && hostPool.idleTransports.remove(pooledTransport)) {
+                    close(pooledTransport.transport);
+                }
+            }
+        }
+    }
+
+    /**
+     * Closes the given transport, ignoring any errors.
+     *
+     * @param transport The transport.
+     */
+    private static void close(Transport transport) {
+
+        try {
+            transport.close();
+
+        } catch (MessagingException ignored) {
+        }
+    }
+
+    /**
+     * The pooled connections for a single host.
+     */
+    private static class HostPool {
+
+        /**
+         * The session for this host, carrying the host in its properties.
+         */
+        private final Session session;
+
+        /**
+         * The permits limiting the number of connections to this host.
+         */
+        private final Semaphore permits;
+
+        /**
+         * The rate limiter for messages sent to this host, or null if the rate is not limited.
+         */
+        private final RateLimiter rateLimiter;
+
+        /**
+         * The idle connections, most recently used first.
+         */
+        private final Deque<PooledTransport> idleTransports = new ConcurrentLinkedDeque<>();
+
+        HostPool(Session session, int maximumConnections, RateLimiter rateLimiter) {
+            this.session = session;
+            this.permits = new Semaphore(maximumConnections, true);
+            this.rateLimiter = rateLimiter;
+        }
+    }
+
+    /**
+     * A pooled connection.
+     */
+    private static class PooledTransport {
+
+        /**
+         * The connected transport.
+         */
+        private final Transport transport;
+
+        /**
+         * The time this connection was last used, in milliseconds.
+         */
+        private volatile long lastUsed;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+            this.lastUsed = System.currentTimeMillis();
+        }
+    }
+}
@@ -3,9 +3,9 @@ package com.stevesoltys.carrier.repository;
 import com.stevesoltys.carrier.model.Account;
 import org.springframework.stereotype.Repository;
 
-import java.util.HashSet;
+import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A repository which contains {@link Account}s.
@@ -16,9 +16,9 @@ import java.util.Set;
 public class AccountRepository {
 
     /**
-     * The set of {@link Account}s that this repository contains.
+     * The {@link Account}s that this repository contains, keyed by username.
      */
-    private final Set<Account> accounts = new HashSet<>();
+    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
     /**
      * Attempts to find an {@link Account} in the repository, given the username.
@@ -28,23 +28,20 @@ public class AccountRepository {
      */
     public Optional<Account> findByUsername(String username) {
 
-        for (Account account : accounts) {
-
-            if (account.getUsername().equals(username)) {
-                return Optional.of(account);
-            }
+        if (username == null) {
+            return Optional.empty();
         }
 
-        return Optional.empty();
+        return Optional.ofNullable(accounts.get(username));
     }
 
     /**
-     * Registers an account in the repository.
+     * Registers an account in the repository, replacing any account with the same username.
      *
      * @param account The account.
      */
     public void register(Account account) {
-        accounts.add(account);
+        accounts.put(account.getUsername(), account);
     }
 
 }
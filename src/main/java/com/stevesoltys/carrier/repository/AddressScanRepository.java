@@ -0,0 +1,90 @@
+package com.stevesoltys.carrier.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.function.Consumer;
+
+/**
+ * Reads the e-mail address of every masked address and stored reply address, for rebuilding the address filter. The
+ * addresses are streamed from the database in fetches of a bounded size, rather than loaded into memory at once.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+@Transactional(readOnly = true)
+public class AddressScanRepository {
+
+    /**
+     * The number of rows fetched from the database at a time. Some drivers, such as PostgreSQL's, only honour this
+     * inside a transaction.
+     */
+    private static final int FETCH_SIZE = 10000;
+
+    /**
+     * The query used for counting the masked addresses and reply addresses.
+     */
+    private static final String COUNT_ADDRESSES = "select (select count(*) from masked_address) "
+            + "+ (select count(*) from reply_address)";
+
+    /**
+     * The query used for selecting the masked addresses.
+     */
+    private static final String SELECT_MASKED_ADDRESSES = "select address from masked_address";
+
+    /**
+     * The query used for selecting the reply addresses.
+     */
+    private static final String SELECT_REPLY_ADDRESSES = "select address from reply_address";
+
+    /**
+     * The JDBC template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public AddressScanRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Counts the masked addresses and reply addresses.
+     *
+     * @return The total number of addresses.
+     */
+    public long countAddresses() {
+        Long count = jdbcTemplate.queryForObject(COUNT_ADDRESSES, Long.class);
+
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * Passes the e-mail address of every masked address and reply address to the given consumer, in turn.
+     *
+     * @param consumer The consumer.
+     */
+    public void forEachAddress(Consumer<String> consumer) {
+        scan(SELECT_MASKED_ADDRESSES, consumer);
+        scan(SELECT_REPLY_ADDRESSES, consumer);
+    }
+
+    /**
+     * Passes the address column of every row returned by the given query to the given consumer.
+     *
+     * @param query    The query.
+     * @param consumer The consumer.
+     */
+    private void scan(String query, Consumer<String> consumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(query);
+            statement.setFetchSize(FETCH_SIZE);
+
+            return statement;
+
+        }, (RowCallbackHandler) resultSet -> consumer.accept(resultSet.getString(1)));
+    }
+}
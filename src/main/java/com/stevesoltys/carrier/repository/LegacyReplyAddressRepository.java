@@ -0,0 +1,81 @@
+package com.stevesoltys.carrier.repository;
+
+import com.stevesoltys.carrier.model.ReplyAddress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+
+/**
+ * The table that reply addresses were stored in before they became {@link ReplyAddress} entities, as a map from
+ * generated address to original sender on each masked address. This is only used for carrying the reply addresses in
+ * it over to the new table.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+@Transactional
+public class LegacyReplyAddressRepository {
+
+    /**
+     * The name of the legacy table.
+     */
+    private static final String LEGACY_TABLE = "masked_address_reply_addresses";
+
+    /**
+     * The statement used for copying the legacy reply addresses, unless they already exist.
+     */
+    private static final String INSERT_REPLY_ADDRESSES = "insert into reply_address "
+            + "(address, masked_address, sender, created, last_used) "
+            + "select l.reply_addresses_key, l.masked_address_address, l.reply_addresses, ?, ? "
+            + "from " + LEGACY_TABLE + " l "
+            + "where not exists (select 1 from reply_address r where r.address = l.reply_addresses_key)";
+
+    /**
+     * The statement used for dropping the legacy table.
+     */
+    private static final String DROP_LEGACY_TABLE = "drop table " + LEGACY_TABLE;
+
+    /**
+     * The JDBC template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public LegacyReplyAddressRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Checks whether the legacy table still exists.
+     *
+     * @return A flag indicating whether the legacy table exists.
+     */
+    public boolean exists() {
+        return jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+
+            try (ResultSet tables = connection.getMetaData().getTables(null, null, LEGACY_TABLE, null)) {
+                return tables.next();
+            }
+        });
+    }
+
+    /**
+     * Copies every legacy reply address to the reply address table, and drops the legacy table, in a single
+     * transaction. The copied reply addresses are treated as if they had just been used, since the time they were last
+     * used was never recorded.
+     *
+     * @return The number of reply addresses that were copied.
+     */
+    public int migrate() {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        int migrated = jdbcTemplate.update(INSERT_REPLY_ADDRESSES, now, now);
+
+        jdbcTemplate.execute(DROP_LEGACY_TABLE);
+        return migrated;
+    }
+}
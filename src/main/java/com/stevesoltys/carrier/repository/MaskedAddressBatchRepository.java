@@ -0,0 +1,90 @@
+package com.stevesoltys.carrier.repository;
+
+import com.stevesoltys.carrier.model.MaskedAddress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Creates and deletes {@link MaskedAddress} entries in JDBC batches, for bulk provisioning. Each batch is a single
+ * round trip and a single transaction.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+@Transactional
+public class MaskedAddressBatchRepository {
+
+    /**
+     * The statement used for inserting a masked address, unless it already exists.
+     */
+    private static final String INSERT_MASKED_ADDRESS = "insert into masked_address (address, destination) "
+            + "select ?, ? where not exists (select 1 from masked_address where address = ?)";
+
+    /**
+     * The statement used for deleting a masked address. Its reply addresses are deleted by the database.
+     */
+    private static final String DELETE_MASKED_ADDRESS = "delete from masked_address where address = ?";
+
+    /**
+     * The JDBC template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    public MaskedAddressBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Creates the given masked addresses. Masked addresses that already exist are left unchanged.
+     *
+     * @param maskedAddresses The masked addresses.
+     * @return The number of masked addresses that were created.
+     */
+    public int createAll(List<MaskedAddress> maskedAddresses) {
+        int[][] updateCounts = jdbcTemplate.batchUpdate(INSERT_MASKED_ADDRESS, maskedAddresses,
+                maskedAddresses.size(), (statement, maskedAddress) -> {
+                    statement.setString(1, maskedAddress.getAddress());
+                    statement.setString(2, maskedAddress.getDestination());
+                    statement.setString(3, maskedAddress.getAddress());
+                });
+
+        return sum(updateCounts);
+    }
+
+    /**
+     * Deletes the given masked addresses, along with their reply addresses.
+     *
+     * @param addresses The e-mail addresses of the masked addresses.
+     * @return The number of masked addresses that were deleted.
+     */
+    public int deleteAll(List<String> addresses) {
+        int[][] updateCounts = jdbcTemplate.batchUpdate(DELETE_MASKED_ADDRESS, addresses, addresses.size(),
+                (statement, address) -> statement.setString(1, address));
+
+        return sum(updateCounts);
+    }
+
+    /**
+     * Sums the row counts of a batch update. Statements whose row count is unknown are not counted.
+     *
+     * @param updateCounts The update counts, as returned by the JDBC template.
+     * @return The total number of affected rows.
+     */
+    private static int sum(int[][] updateCounts) {
+        int total = 0;
+
+        for (int[] batchCounts : updateCounts) {
+
+            for (int updateCount : batchCounts) {
+                total += Math.max(updateCount, 0);
+            }
+        }
+
+        return total;
+    }
+}
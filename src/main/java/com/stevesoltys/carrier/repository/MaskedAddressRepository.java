@@ -1,11 +1,13 @@
 package com.stevesoltys.carrier.repository;
 
 import com.stevesoltys.carrier.model.MaskedAddress;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -26,12 +28,26 @@ public interface MaskedAddressRepository extends JpaRepository<MaskedAddress, Lo
     Optional<MaskedAddress> findByAddress(String address);
 
     /**
-     * Finds a masked address, given the generated reply address.
+     * Finds a page of masked addresses in order of their e-mail address, starting after the given address. Since
+     * this seeks on the primary key rather than skipping rows, every page is equally cheap to fetch.
      *
-     * @param address The generated reply address.
-     * @return An optional, possibly containing the masked address.
+     * @param address  The e-mail address after which the page starts. An empty string starts at the beginning.
+     * @param pageable The page request, whose page number should always be zero.
+     * @return The masked addresses.
+     */
+    List<MaskedAddress> findByAddressGreaterThanOrderByAddress(String address, Pageable pageable);
+
+    /**
+     * Finds the routing data for a recipient address in a single query. Each row contains the kind of route (either
+     * 'MASKED' or 'REPLY'), the masked address, its destination, and the original sender for a reply address.
+     *
+     * @param address The recipient address, which is either a masked address or a generated reply address.
+     * @return The rows for the address.
      */
-    @Query("select a from MaskedAddress a join a.replyAddresses r where ?1 in (KEY(r))")
-    Optional<MaskedAddress> findByReplyAddress(String address);
+    @Query(value = "select 'MASKED', m.address, m.destination, null from masked_address m where m.address = ?1 "
+            + "union all "
+            + "select 'REPLY', m.address, m.destination, r.sender from reply_address r "
+            + "join masked_address m on m.address = r.masked_address where r.address = ?1", nativeQuery = true)
+    List<Object[]> findRoutes(String address);
 
 }
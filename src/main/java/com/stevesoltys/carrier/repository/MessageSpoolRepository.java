@@ -0,0 +1,408 @@
+package com.stevesoltys.carrier.repository;
+
+import com.google.common.io.ByteSource;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An append-only, on-disk spool of accepted messages. Messages are written to memory-mapped segment files and flushed
+ * to disk before they are acknowledged to the sending client. The spool identifiers of delivered messages are appended
+ * to an index file, and any message that is not in the index is handed back by {@link #open(File, int)} so that it can
+ * be delivered again.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+public class MessageSpoolRepository {
+
+    /**
+     * The name of the index file, which contains the spool identifiers of completed messages.
+     */
+    private static final String INDEX_FILE_NAME = "spool.idx";
+
+    /**
+     * The open segments, keyed by segment number.
+     */
+    private final Map<Long, MessageSpoolSegment> segments = new HashMap<>();
+
+    /**
+     * The segments that have been written to since they were last flushed.
+     */
+    private final Set<MessageSpoolSegment> dirtySegments = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The lock used for batching flushes.
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+
+    /**
+     * Signalled whenever a flush finishes.
+     */
+    private final Condition syncCondition = syncLock.newCondition();
+
+    /**
+     * The number of flushes that have been started.
+     */
+    private long syncsStarted;
+
+    /**
+     * The number of flushes that have finished.
+     */
+    private long syncsCompleted;
+
+    /**
+     * A flag indicating whether a flush is in progress.
+     */
+    private boolean syncing;
+
+    /**
+     * The spool directory.
+     */
+    private File directory;
+
+    /**
+     * The size of newly created segments.
+     */
+    private int segmentSize;
+
+    /**
+     * The segment that new messages are appended to.
+     */
+    private MessageSpoolSegment activeSegment;
+
+    /**
+     * The index file channel.
+     */
+    private FileChannel index;
+
+    /**
+     * Opens the spool in the given directory, recovering any messages which were not completed.
+     *
+     * @param directory   The spool directory.
+     * @param segmentSize The size of newly created segments, in bytes.
+     * @return The messages that have not been completed.
+     * @throws IOException If there is an error while opening the spool.
+     */
+    public synchronized List<SpooledMessage> open(File directory, int segmentSize) throws IOException {
+
+        if (index != null) {
+            throw new IOException("The message spool is already open.");
+        }
+
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Could not create spool directory '" + directory + "'.");
+        }
+
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        Set<Long> completed = readIndex(indexFile);
+
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.endsWith(MessageSpoolSegment.FILE_SUFFIX));
+        Arrays.sort(segmentFiles);
+
+        List<SpooledMessage> pending = new ArrayList<>();
+        long nextSegmentNumber = 0;
+
+        for (File segmentFile : segmentFiles) {
+            String name = segmentFile.getName();
+            long number = Long.parseLong(name.substring(0, name.length() - MessageSpoolSegment.FILE_SUFFIX.length()));
+
+            MessageSpoolSegment segment = MessageSpoolSegment.open(segmentFile, number);
+            List<SpooledMessage> messages = segment.recover(completed);
+
+            if (messages.isEmpty()) {
+                segment.delete();
+
+            } else {
+                segments.put(number, segment);
+                pending.addAll(messages);
+            }
+
+            nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+        }
+
+        compactIndex(indexFile, completed);
+        index = FileChannel.open(indexFile.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+
+        activeSegment = MessageSpoolSegment.create(directory, nextSegmentNumber, segmentSize);
+        segments.put(nextSegmentNumber, activeSegment);
+
+        return pending;
+    }
+
+    /**
+     * Closes the spool, flushing all segments to disk.
+     *
+     * @throws IOException If there is an error while closing the index file.
+     */
+    @PreDestroy
+    public synchronized void close() throws IOException {
+
+        if (index == null) {
+            return;
+        }
+
+        segments.values().forEach(MessageSpoolSegment::force);
+        segments.clear();
+        dirtySegments.clear();
+
+        index.close();
+        index = null;
+        activeSegment = null;
+    }
+
+    /**
+     * Appends a message to the spool. When this function returns, the message has been flushed to disk. Concurrent
+     * appends share a single flush.
+     *
+     * @param from       The envelope sender.
+     * @param recipients The envelope recipients.
+     * @param data       The raw message data.
+     * @return The spooled message.
+     * @throws IOException If there is an error while writing the message.
+     */
+    public SpooledMessage append(String from, List<String> recipients, ByteSource data) throws IOException {
+        byte[] envelope = encodeEnvelope(from, recipients);
+        long length = 4L + envelope.length + data.size();
+
+        if (length > Integer.MAX_VALUE - MessageSpoolSegment.HEADER_SIZE) {
+            throw new IOException("Message is too large to be spooled.");
+        }
+
+        MessageSpoolSegment segment;
+        int offset;
+
+        synchronized (this) {
+
+            if (index == null) {
+                throw new IOException("The message spool is not open.");
+            }
+
+            segment = activeSegment;
+            offset = segment.reserve((int) length);
+
+            if (offset == -1) {
+                segment = rotate((int) length);
+                offset = segment.reserve((int) length);
+            }
+        }
+
+        long id = MessageSpoolSegment.id(segment.getNumber(), offset);
+        ByteBuffer buffer;
+
+        try {
+            buffer = segment.write(offset, envelope, data);
+
+        } catch (IOException | RuntimeException e) {
+            release(segment);
+            throw e;
+        }
+
+        dirtySegments.add(segment);
+        sync();
+
+        return new SpooledMessage(id, from, recipients, buffer);
+    }
+
+    /**
+     * Marks a message as completed, so that it will not be recovered when the spool is next opened. Segments which no
+     * longer contain any pending messages are deleted.
+     *
+     * @param id The spool identifier of the message.
+     * @throws IOException If there is an error while writing to the index file.
+     */
+    public synchronized void complete(long id) throws IOException {
+
+        if (index == null) {
+            return;
+        }
+
+        MessageSpoolSegment segment = segments.get(MessageSpoolSegment.number(id));
+
+        if (segment == null) {
+            return;
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(8);
+        entry.putLong(id).flip();
+
+        while (entry.hasRemaining()) {
+            index.write(entry);
+        }
+
+        release(segment);
+    }
+
+    /**
+     * Releases a pending record in the given segment, deleting the segment if it is no longer needed.
+     *
+     * @param segment The segment.
+     */
+    private synchronized void release(MessageSpoolSegment segment) {
+
+        if (segment.complete() <= 0 && segment != activeSegment) {
+            segments.remove(segment.getNumber());
+            dirtySegments.remove(segment);
+
+            segment.delete();
+        }
+    }
+
+    /**
+     * Replaces the active segment with a new one. Callers must hold the lock of this repository.
+     *
+     * @param minimumSize The minimum size of the new segment, excluding the record header.
+     * @return The new active segment.
+     * @throws IOException If there is an error while creating the segment.
+     */
+    private MessageSpoolSegment rotate(int minimumSize) throws IOException {
+        MessageSpoolSegment previous = activeSegment;
+        long number = previous.getNumber() + 1;
+
+        int size = Math.max(segmentSize, minimumSize + MessageSpoolSegment.HEADER_SIZE);
+        activeSegment = MessageSpoolSegment.create(directory, number, size);
+        segments.put(number, activeSegment);
+
+        if (previous.getPending() == 0) {
+            segments.remove(previous.getNumber());
+            dirtySegments.remove(previous);
+
+            previous.delete();
+        }
+
+        return activeSegment;
+    }
+
+    /**
+     * Waits until every segment written to before this call has been flushed to disk. If no flush is in progress, the
+     * calling thread performs one on behalf of every thread which is waiting.
+     */
+    private void sync() {
+        syncLock.lock();
+
+        try {
+            long required = syncsStarted + 1;
+
+            while (syncsCompleted < required) {
+
+                if (syncing) {
+                    syncCondition.awaitUninterruptibly();
+                    continue;
+                }
+
+                syncing = true;
+                long generation = ++syncsStarted;
+
+                syncLock.unlock();
+
+                try {
+                    for (Iterator<MessageSpoolSegment> iterator = dirtySegments.iterator(); iterator.hasNext(); ) {
+                        MessageSpoolSegment segment = iterator.next();
+                        iterator.remove();
+
+                        segment.force();
+                    }
+
+                } finally {
+                    syncLock.lock();
+
+                    syncing = false;
+                    syncsCompleted = generation;
+                    syncCondition.signalAll();
+                }
+            }
+
+        } finally {
+            syncLock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the envelope of a message.
+     *
+     * @param from       The envelope sender.
+     * @param recipients The envelope recipients.
+     * @return The encoded envelope.
+     * @throws IOException If there is an error while encoding the envelope.
+     */
+    private static byte[] encodeEnvelope(String from, List<String> recipients) throws IOException {
+        ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+
+        try (DataOutputStream outputStream = new DataOutputStream(byteStream)) {
+            outputStream.writeUTF(from);
+            outputStream.writeInt(recipients.size());
+
+            for (String recipient : recipients) {
+                outputStream.writeUTF(recipient);
+            }
+        }
+
+        return byteStream.toByteArray();
+    }
+
+    /**
+     * Reads the spool identifiers of completed messages from the index file.
+     *
+     * @param indexFile The index file.
+     * @return The spool identifiers.
+     * @throws IOException If there is an error while reading the index file.
+     */
+    private static Set<Long> readIndex(File indexFile) throws IOException {
+        Set<Long> completed = new HashSet<>();
+
+        if (!indexFile.exists()) {
+            return completed;
+        }
+
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(indexFile)))) {
+
+            long entries = indexFile.length() / 8;
+
+            for (long i = 0; i < entries; i++) {
+                completed.add(inputStream.readLong());
+            }
+        }
+
+        return completed;
+    }
+
+    /**
+     * Rewrites the index file, keeping only the entries which refer to segments that still exist.
+     *
+     * @param indexFile The index file.
+     * @param completed The spool identifiers of completed messages.
+     * @throws IOException If there is an error while writing the index file.
+     */
+    private void compactIndex(File indexFile, Set<Long> completed) throws IOException {
+        File compactedFile = new File(directory, INDEX_FILE_NAME + ".tmp");
+
+        try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(compactedFile)))) {
+
+            for (long id : completed) {
+
+                if (segments.containsKey(MessageSpoolSegment.number(id))) {
+                    outputStream.writeLong(id);
+                }
+            }
+        }
+
+        Files.move(compactedFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+}
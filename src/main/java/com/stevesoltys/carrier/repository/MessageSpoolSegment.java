@@ -0,0 +1,337 @@
+package com.stevesoltys.carrier.repository;
+
+import com.google.common.io.ByteSource;
+import com.stevesoltys.carrier.model.SpooledMessage;
+
+import java.io.*;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A memory-mapped segment file of the {@link MessageSpoolRepository}. Records are appended one after another, each
+ * laid out as a length, a CRC-32 checksum, the encoded envelope length, the envelope and the raw message data. A
+ * length of zero marks the end of the written part of the segment.
+ *
+ * @author Steve Soltys
+ */
+class MessageSpoolSegment {
+
+    /**
+     * The size of a record header: the record length and the checksum.
+     */
+    static final int HEADER_SIZE = 8;
+
+    /**
+     * The file name suffix for segment files.
+     */
+    static final String FILE_SUFFIX = ".seg";
+
+    /**
+     * The size of the buffer used for copying message data into the segment.
+     */
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The segment number.
+     */
+    private final long number;
+
+    /**
+     * The segment file.
+     */
+    private final File file;
+
+    /**
+     * The memory-mapped segment file.
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * The offset that the next record will be written to.
+     */
+    private int position;
+
+    /**
+     * The number of records in this segment that have not been completed yet.
+     */
+    private int pending;
+
+    private MessageSpoolSegment(long number, File file, MappedByteBuffer buffer) {
+        this.number = number;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Creates a new, empty segment.
+     *
+     * @param directory The spool directory.
+     * @param number    The segment number.
+     * @param size      The size of the segment, in bytes.
+     * @return The segment.
+     * @throws IOException If there is an error while creating the segment file.
+     */
+    static MessageSpoolSegment create(File directory, long number, int size) throws IOException {
+        File file = new File(directory, fileName(number));
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(size);
+
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            return new MessageSpoolSegment(number, file, buffer);
+        }
+    }
+
+    /**
+     * Opens an existing segment.
+     *
+     * @param file   The segment file.
+     * @param number The segment number.
+     * @return The segment.
+     * @throws IOException If there is an error while opening the segment file.
+     */
+    static MessageSpoolSegment open(File file, long number) throws IOException {
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            long length = randomAccessFile.length();
+
+            if (length > Integer.MAX_VALUE) {
+                throw new IOException("Spool segment '" + file + "' is too large.");
+            }
+
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+            return new MessageSpoolSegment(number, file, buffer);
+        }
+    }
+
+    /**
+     * Gets the file name for the segment with the given number.
+     *
+     * @param number The segment number.
+     * @return The file name.
+     */
+    static String fileName(long number) {
+        return String.format("%010d%s", number, FILE_SUFFIX);
+    }
+
+    /**
+     * Gets the spool identifier of the record at the given offset in the segment with the given number.
+     *
+     * @param number The segment number.
+     * @param offset The record offset.
+     * @return The spool identifier.
+     */
+    static long id(long number, int offset) {
+        return (number << 32) | offset;
+    }
+
+    /**
+     * Gets the segment number from the given spool identifier.
+     *
+     * @param id The spool identifier.
+     * @return The segment number.
+     */
+    static long number(long id) {
+        return id >>> 32;
+    }
+
+    /**
+     * Reserves space for a record and writes its length, so that a later scan can skip over the record even if it is
+     * never completely written. Callers must hold the lock of the owning repository.
+     *
+     * @param length The length of the record, excluding the header.
+     * @return The offset of the record, or -1 if there is not enough space left in this segment.
+     */
+    int reserve(int length) {
+
+        if ((long) position + HEADER_SIZE + length > buffer.capacity()) {
+            return -1;
+        }
+
+        int offset = position;
+        buffer.putInt(offset, length);
+
+        position += HEADER_SIZE + length;
+        pending++;
+
+        return offset;
+    }
+
+    /**
+     * Writes a record into space that was previously reserved using {@link #reserve(int)}. The checksum is written
+     * last, so an incomplete record is detected when the segment is scanned.
+     *
+     * @param offset   The record offset.
+     * @param envelope The encoded envelope.
+     * @param data     The raw message data.
+     * @return A buffer containing the raw message data.
+     * @throws IOException If there is an error while reading the message data.
+     */
+    ByteBuffer write(int offset, byte[] envelope, ByteSource data) throws IOException {
+        ByteBuffer record = buffer.duplicate();
+        record.limit(offset + HEADER_SIZE + buffer.getInt(offset));
+        record.position(offset + HEADER_SIZE);
+
+        record.putInt(envelope.length);
+        record.put(envelope);
+
+        int dataOffset = record.position();
+        byte[] copyBuffer = new byte[COPY_BUFFER_SIZE];
+
+        try (InputStream inputStream = data.openStream()) {
+            int read;
+
+            while ((read = inputStream.read(copyBuffer)) != -1) {
+                record.put(copyBuffer, 0, read);
+            }
+
+        } catch (BufferOverflowException e) {
+            throw new IOException("Spooled message data is larger than its reserved space.");
+        }
+
+        int end = record.position();
+
+        if (end != record.limit()) {
+            throw new IOException("Spooled message data is smaller than its reserved space.");
+        }
+
+        buffer.putInt(offset + 4, checksum(offset + HEADER_SIZE, end));
+        return slice(dataOffset, end);
+    }
+
+    /**
+     * Scans this segment, returning the records that have not been completed. Records with an invalid checksum are
+     * skipped, since they were never acknowledged.
+     *
+     * @param completed The spool identifiers of the completed records.
+     * @return The pending messages.
+     * @throws IOException If an envelope could not be decoded.
+     */
+    List<SpooledMessage> recover(Set<Long> completed) throws IOException {
+        List<SpooledMessage> messages = new ArrayList<>();
+        int offset = 0;
+
+        while (offset + HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+
+            if (length <= 0 || (long) offset + HEADER_SIZE + length > buffer.capacity()) {
+                break;
+            }
+
+            int start = offset + HEADER_SIZE;
+            int end = start + length;
+            long id = id(number, offset);
+
+            if (!completed.contains(id) && buffer.getInt(offset + 4) == checksum(start, end)) {
+                int envelopeLength = buffer.getInt(start);
+
+                byte[] envelope = new byte[envelopeLength];
+                ByteBuffer envelopeBuffer = buffer.duplicate();
+                envelopeBuffer.position(start + 4);
+                envelopeBuffer.get(envelope);
+
+                DataInputStream envelopeStream = new DataInputStream(new ByteArrayInputStream(envelope));
+                String from = envelopeStream.readUTF();
+                int recipientCount = envelopeStream.readInt();
+
+                List<String> recipients = new ArrayList<>(recipientCount);
+
+                for (int i = 0; i < recipientCount; i++) {
+                    recipients.add(envelopeStream.readUTF());
+                }
+
+                messages.add(new SpooledMessage(id, from, recipients, slice(start + 4 + envelopeLength, end)));
+            }
+
+            offset = end;
+        }
+
+        position = offset;
+        pending = messages.size();
+
+        return messages;
+    }
+
+    /**
+     * Flushes the written part of this segment to disk.
+     */
+    void force() {
+        buffer.force();
+    }
+
+    /**
+     * Deletes the segment file. The mapping stays valid until it is garbage collected, so messages that are still
+     * being delivered from this segment can be read.
+     *
+     * @return A flag indicating whether the file was deleted.
+     */
+    boolean delete() {
+        return file.delete();
+    }
+
+    /**
+     * Marks a record in this segment as completed. Callers must hold the lock of the owning repository.
+     *
+     * @return The number of records that are still pending.
+     */
+    int complete() {
+        return --pending;
+    }
+
+    /**
+     * Gets the number of records in this segment that have not been completed yet.
+     *
+     * @return The number of pending records.
+     */
+    int getPending() {
+        return pending;
+    }
+
+    /**
+     * Gets the segment number.
+     *
+     * @return The segment number.
+     */
+    long getNumber() {
+        return number;
+    }
+
+    /**
+     * Computes the checksum of a region of this segment.
+     *
+     * @param start The start offset, inclusive.
+     * @param end   The end offset, exclusive.
+     * @return The checksum.
+     */
+    private int checksum(int start, int end) {
+        ByteBuffer region = buffer.duplicate();
+        region.position(start);
+        region.limit(end);
+
+        CRC32 crc = new CRC32();
+        crc.update(region);
+
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Creates a buffer over a region of this segment.
+     *
+     * @param start The start offset, inclusive.
+     * @param end   The end offset, exclusive.
+     * @return The buffer.
+     */
+    private ByteBuffer slice(int start, int end) {
+        ByteBuffer region = buffer.duplicate();
+        region.position(start);
+        region.limit(end);
+
+        return region.slice();
+    }
+}
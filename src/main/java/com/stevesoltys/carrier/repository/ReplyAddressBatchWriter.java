@@ -0,0 +1,256 @@
+package com.stevesoltys.carrier.repository;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.model.ReplyAddress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stores generated {@link ReplyAddress} entries in batches. Reply addresses are queued, and a single writer thread
+ * inserts them with one JDBC batch and one commit, once the batch is full or the oldest reply address in it has waited
+ * for the configured delay. Under load, this replaces a transaction per forwarded message with a few large ones.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+public class ReplyAddressBatchWriter {
+
+    /**
+     * The statement used for inserting a reply address.
+     */
+    private static final String INSERT_REPLY_ADDRESS = "insert into reply_address "
+            + "(address, masked_address, sender, created, last_used) values (?, ?, ?, ?, ?)";
+
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
+    /**
+     * The JDBC template.
+     */
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * The template used for running each batch in a single transaction.
+     */
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * The reply addresses waiting to be stored.
+     */
+    private final BlockingQueue<PendingReplyAddress> pendingReplyAddresses = new LinkedBlockingQueue<>();
+
+    /**
+     * The executor running the writer thread.
+     */
+    private ExecutorService writerExecutor;
+
+    /**
+     * A flag indicating whether the writer has been stopped.
+     */
+    private volatile boolean stopped;
+
+    @Autowired
+    public ReplyAddressBatchWriter(DeliveryConfiguration deliveryConfiguration, JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager) {
+
+        this.deliveryConfiguration = deliveryConfiguration;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Starts the writer thread.
+     */
+    @PostConstruct
+    public void start() {
+        writerExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("carrier-reply-address-writer").setDaemon(true).build());
+
+        writerExecutor.execute(this::run);
+    }
+
+    /**
+     * Stops the writer thread, and stores any reply addresses that are still waiting.
+     */
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        writerExecutor.shutdownNow();
+
+        try {
+            writerExecutor.awaitTermination(deliveryConfiguration.getTimeout(), TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<PendingReplyAddress> batch = new ArrayList<>();
+
+        while (pendingReplyAddresses.drainTo(batch, deliveryConfiguration.getReplyAddressBatchSize()) > 0) {
+            write(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Queues a reply address to be stored.
+     *
+     * @param replyAddress The reply address.
+     * @return A future which is completed once the reply address has been committed, or completed exceptionally if
+     * it could not be stored. If the writer has been stopped, the future has already failed.
+     */
+    public CompletableFuture<Void> write(ReplyAddress replyAddress) {
+        PendingReplyAddress pendingReplyAddress = new PendingReplyAddress(replyAddress);
+
+        if (stopped) {
+            pendingReplyAddress.future.completeExceptionally(new IllegalStateException(
+                    "The reply address writer has been stopped."));
+
+            return pendingReplyAddress.future;
+        }
+
+        pendingReplyAddresses.add(pendingReplyAddress);
+
+        if (stopped && pendingReplyAddresses.remove(pendingReplyAddress)) {
+            pendingReplyAddress.future.completeExceptionally(new IllegalStateException(
+                    "The reply address writer has been stopped."));
+        }
+
+        return pendingReplyAddress.future;
+    }
+
+    /**
+     * Collects and writes batches until the writer thread is interrupted.
+     */
+    private void run() {
+        List<PendingReplyAddress> batch = new ArrayList<>();
+
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(pendingReplyAddresses.take());
+
+                int batchSize = deliveryConfiguration.getReplyAddressBatchSize();
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(deliveryConfiguration.getReplyAddressBatchDelay());
+
+                while (batch.size() < batchSize) {
+                    PendingReplyAddress pendingReplyAddress = pendingReplyAddresses.poll(deadline - System.nanoTime(),
+                            TimeUnit.NANOSECONDS);
+
+                    if (pendingReplyAddress == null) {
+                        break;
+                    }
+
+                    batch.add(pendingReplyAddress);
+                }
+
+                write(batch);
+                batch.clear();
+            }
+
+        } catch (InterruptedException e) {
+            pendingReplyAddresses.addAll(batch);
+        }
+    }
+
+    /**
+     * Inserts a batch of reply addresses in a single transaction, and completes their futures. If the batch fails,
+     * each reply address is inserted again in its own transaction, so that one bad row, such as a duplicate address or
+     * a masked address which has been deleted, only fails its own future.
+     *
+     * @param batch The batch.
+     */
+    private void write(List<PendingReplyAddress> batch) {
+
+        try {
+            insert(batch);
+            batch.forEach(pendingReplyAddress -> pendingReplyAddress.future.complete(null));
+            return;
+
+        } catch (RuntimeException ex) {
+
+            if (batch.size() == 1) {
+                ex.printStackTrace();
+
+                batch.get(0).future.completeExceptionally(ex);
+                return;
+            }
+        }
+
+        for (PendingReplyAddress pendingReplyAddress : batch) {
+
+            try {
+                insert(Collections.singletonList(pendingReplyAddress));
+                pendingReplyAddress.future.complete(null);
+
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+
+                pendingReplyAddress.future.completeExceptionally(ex);
+            }
+        }
+    }
+
+    /**
+     * Inserts the given reply addresses with a single JDBC batch, in a single transaction.
+     *
+     * @param batch The reply addresses.
+     */
+    private void insert(List<PendingReplyAddress> batch) {
+        transactionTemplate.execute(status -> jdbcTemplate.batchUpdate(INSERT_REPLY_ADDRESS, batch, batch.size(),
+                (statement, pendingReplyAddress) -> {
+                    ReplyAddress replyAddress = pendingReplyAddress.replyAddress;
+
+                    statement.setString(1, replyAddress.getAddress());
+                    statement.setString(2, replyAddress.getMaskedAddress().getAddress());
+                    statement.setString(3, replyAddress.getSender());
+                    statement.setTimestamp(4, new Timestamp(replyAddress.getCreated().getTime()));
+                    statement.setTimestamp(5, replyAddress.getLastUsed() == null ? null
+                            : new Timestamp(replyAddress.getLastUsed().getTime()));
+                }));
+    }
+
+    /**
+     * A reply address waiting to be stored.
+     */
+    private static class PendingReplyAddress {
+
+        /**
+         * The reply address.
+         */
+        private final ReplyAddress replyAddress;
+
+        /**
+         * The future which is completed once the reply address has been stored.
+         */
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        /**
+         * Creates a pending reply address.
+         *
+         * @param replyAddress The reply address.
+         */
+        PendingReplyAddress(ReplyAddress replyAddress) {
+            this.replyAddress = replyAddress;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.stevesoltys.carrier.repository;
+
+import com.stevesoltys.carrier.model.ReplyAddress;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+/**
+ * The {@link ReplyAddress} repository.
+ *
+ * @author Steve Soltys
+ */
+@Repository
+@Transactional
+public interface ReplyAddressRepository extends JpaRepository<ReplyAddress, String> {
+
+    /**
+     * Sets the time at which a reply address was last used for forwarding a reply.
+     *
+     * @param address  The generated reply address.
+     * @param lastUsed The last used time.
+     */
+    @Modifying
+    @Query("update ReplyAddress r set r.lastUsed = ?2 where r.address = ?1")
+    void updateLastUsed(String address, Date lastUsed);
+
+    /**
+     * Sets the last used time of a bounded batch of reply addresses which were stored before it was recorded, to the
+     * time they were generated.
+     *
+     * @param limit The maximum number of reply addresses to update.
+     * @return The number of updated reply addresses.
+     */
+    @Modifying
+    @Query(value = "update reply_address set last_used = created where address in "
+            + "(select address from reply_address where last_used is null limit ?1)", nativeQuery = true)
+    int backfillLastUsed(int limit);
+
+    /**
+     * Deletes a bounded batch of reply addresses which have not been used since the given time.
+     *
+     * @param expiry The time before which a reply address must have last been used for it to be deleted.
+     * @param limit  The maximum number of reply addresses to delete.
+     * @return The number of deleted reply addresses.
+     */
+    @Modifying
+    @Query(value = "delete from reply_address where address in "
+            + "(select address from reply_address where last_used < ?1 limit ?2)", nativeQuery = true)
+    int deleteExpired(Date expiry, int limit);
+
+}
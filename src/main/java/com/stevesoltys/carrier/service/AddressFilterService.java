@@ -0,0 +1,245 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stevesoltys.carrier.repository.AddressScanRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Keeps a Bloom filter of every masked address and stored reply address, so that recipients which definitely do not
+ * exist can be rejected without querying the database. The filter is built in the background when the service starts,
+ * and every address is reported as possibly existing until then.
+ * <p>
+ * Addresses cannot be removed from a Bloom filter, so a deleted address stays in the filter until the next rebuild.
+ * This only costs a database lookup, since a possible match is always checked.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class AddressFilterService {
+
+    /**
+     * The target false positive probability.
+     */
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    /**
+     * The minimum number of addresses that the filter is sized for.
+     */
+    private static final int MINIMUM_EXPECTED_ADDRESSES = 100000;
+
+    /**
+     * The interval at which the filter is rebuilt, in minutes. Rebuilding drops deleted addresses, and resizes the
+     * filter for the number of addresses that exist.
+     */
+    private static final long REBUILD_INTERVAL = 60;
+
+    /**
+     * The address scan repository.
+     */
+    private final AddressScanRepository addressScanRepository;
+
+    /**
+     * The lock guarding the filter. Guava's Bloom filter does not support adding while it is being read.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * The number of recipients that were rejected by the filter.
+     */
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * The filter, or null if it has not been built yet.
+     */
+    private BloomFilter<String> filter;
+
+    /**
+     * The addresses added while the filter is being rebuilt, or null if it is not being rebuilt.
+     */
+    private List<String> pendingAddresses;
+
+    /**
+     * The serialized size of the filter, in bytes.
+     */
+    private volatile long filterSize;
+
+    /**
+     * The executor used for rebuilding the filter.
+     */
+    private ScheduledExecutorService rebuildExecutor;
+
+    @Autowired
+    public AddressFilterService(AddressScanRepository addressScanRepository) {
+        this.addressScanRepository = addressScanRepository;
+    }
+
+    /**
+     * Starts building the filter, and rebuilding it periodically.
+     */
+    @PostConstruct
+    public void start() {
+        rebuildExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("carrier-address-filter").setDaemon(true).build());
+
+        rebuildExecutor.scheduleWithFixedDelay(this::rebuild, 0, REBUILD_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops rebuilding the filter.
+     */
+    @PreDestroy
+    public void stop() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    /**
+     * Checks whether the given address might be a masked address or stored reply address. If this returns false, the
+     * address definitely does not exist.
+     *
+     * @param address The e-mail address.
+     * @return False if the address does not exist, true if it might.
+     */
+    public boolean mightExist(String address) {
+        lock.readLock().lock();
+
+        try {
+            if (filter == null || filter.mightContain(address)) {
+                return true;
+            }
+
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        rejectedCount.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Adds an address to the filter. This must be called when a masked address or reply address is stored.
+     *
+     * @param address The e-mail address.
+     */
+    public void add(String address) {
+        lock.writeLock().lock();
+
+        try {
+            if (filter != null) {
+                filter.put(address);
+            }
+
+            if (pendingAddresses != null) {
+                pendingAddresses.add(address);
+            }
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the filter from every address in the database. The filter is sized from a count of the addresses, and
+     * the addresses are then streamed into it, so they are never all held in memory. Addresses added while the
+     * database is being read are carried over to the new filter.
+     */
+    public synchronized void rebuild() {
+        lock.writeLock().lock();
+
+        try {
+            pendingAddresses = new ArrayList<>();
+
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        try {
+            long expectedAddresses = Math.max(MINIMUM_EXPECTED_ADDRESSES, addressScanRepository.countAddresses() * 2);
+
+            BloomFilter<String> rebuiltFilter = BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8),
+                    expectedAddresses, FALSE_POSITIVE_PROBABILITY);
+
+            addressScanRepository.forEachAddress(rebuiltFilter::put);
+
+            CountingOutputStream outputStream = new CountingOutputStream(ByteStreams.nullOutputStream());
+            rebuiltFilter.writeTo(outputStream);
+
+            lock.writeLock().lock();
+
+            try {
+                pendingAddresses.forEach(rebuiltFilter::put);
+
+                filter = rebuiltFilter;
+                filterSize = outputStream.getCount();
+
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+
+        } finally {
+            lock.writeLock().lock();
+
+            try {
+                pendingAddresses = null;
+
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Gets the probability that the filter reports an address which does not exist as possibly existing, given the
+     * addresses that it currently holds.
+     *
+     * @return The expected false positive probability, or 1 if the filter has not been built yet.
+     */
+    public double getExpectedFalsePositiveRate() {
+        lock.readLock().lock();
+
+        try {
+            return filter == null ? 1 : filter.expectedFpp();
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the memory used by the filter.
+     *
+     * @return The size of the filter, in bytes.
+     */
+    public long getSize() {
+        return filterSize;
+    }
+
+    /**
+     * Gets the number of recipients that were rejected by the filter.
+     *
+     * @return The number of rejected recipients.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -0,0 +1,148 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.RateLimiter;
+import com.stevesoltys.carrier.configuration.LimitsConfiguration;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Locale;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the rate and concurrency of outbound delivery to each destination domain, as configured in the
+ * {@link LimitsConfiguration}. Admission never blocks: a delivery that would go over a domain's limits is refused, and
+ * is expected to be deferred for a short while instead, so that a throttled domain never ties up the delivery workers
+ * that other domains need.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class DeliveryLimiterService {
+
+    /**
+     * The amount of time that an unused domain limiter is kept for, in minutes. This is much longer than a delivery
+     * can take, so a limiter is never dropped while one of its permits is held.
+     */
+    private static final long LIMITER_TTL = 60;
+
+    /**
+     * The shortest amount of time that a throttled delivery is deferred for, in milliseconds.
+     */
+    private static final long MINIMUM_THROTTLE_DELAY = 1000;
+
+    /**
+     * The limits configuration.
+     */
+    private final LimitsConfiguration limitsConfiguration;
+
+    /**
+     * The limiters, keyed by lowercase destination domain. These are created lazily, once the configuration has been
+     * loaded.
+     */
+    private final LoadingCache<String, DomainLimiter> limiters = CacheBuilder.newBuilder()
+            .expireAfterAccess(LIMITER_TTL, TimeUnit.MINUTES)
+            .build(CacheLoader.from(this::createLimiter));
+
+    @Autowired
+    public DeliveryLimiterService(LimitsConfiguration limitsConfiguration) {
+        this.limitsConfiguration = limitsConfiguration;
+    }
+
+    /**
+     * Tries to admit a delivery to the given domain, without waiting. If the delivery is admitted, it holds one of the
+     * domain's concurrent delivery permits until {@link #release(String)} is called.
+     *
+     * @param domain   The destination domain.
+     * @param messages The number of messages that the delivery sends.
+     * @return A flag indicating whether the delivery was admitted.
+     */
+    public boolean tryAcquire(String domain, int messages) {
+        DomainLimiter limiter = limiters.getUnchecked(domain.toLowerCase(Locale.ROOT));
+
+        if (limiter.permits != null && !limiter.permits.tryAcquire()) {
+            return false;
+        }
+
+        if (limiter.rateLimiter != null && !limiter.rateLimiter.tryAcquire(messages)) {
+
+            if (limiter.permits != null) {
+                limiter.permits.release();
+            }
+
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Releases the concurrent delivery permit held by an admitted delivery to the given domain.
+     *
+     * @param domain The destination domain.
+     */
+    public void release(String domain) {
+        DomainLimiter limiter = limiters.getUnchecked(domain.toLowerCase(Locale.ROOT));
+
+        if (limiter.permits != null) {
+            limiter.permits.release();
+        }
+    }
+
+    /**
+     * Gets the amount of time to defer a delivery to the given domain for, after it was refused. This is at least the
+     * time between two messages at the domain's rate, with a random amount added so that throttled deliveries do not
+     * all come back at once.
+     *
+     * @param domain The destination domain.
+     * @return The throttle delay, in milliseconds.
+     */
+    public long getThrottleDelay(String domain) {
+        double rate = limitsConfiguration.getDomainLimit(domain).getRate();
+        long delay = MINIMUM_THROTTLE_DELAY;
+
+        if (rate > 0) {
+            delay = Math.max(delay, (long) Math.ceil(TimeUnit.SECONDS.toMillis(1) / rate));
+        }
+
+        return delay + (long) (delay * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Creates the limiter for the given domain.
+     *
+     * @param domain The destination domain.
+     * @return The limiter.
+     */
+    private DomainLimiter createLimiter(String domain) {
+        LimitsConfiguration.Limit limit = limitsConfiguration.getDomainLimit(domain);
+
+        return new DomainLimiter(limit.getRate() > 0 ? RateLimiter.create(limit.getRate()) : null,
+                limit.getConnections() > 0 ? new Semaphore(limit.getConnections()) : null);
+    }
+
+    /**
+     * The limiter for a single destination domain.
+     */
+    private static class DomainLimiter {
+
+        /**
+         * The rate limiter, or null if the rate is not limited.
+         */
+        private final RateLimiter rateLimiter;
+
+        /**
+         * The concurrent delivery permits, or null if concurrency is not limited.
+         */
+        private final Semaphore permits;
+
+        DomainLimiter(RateLimiter rateLimiter, Semaphore permits) {
+            this.rateLimiter = rateLimiter;
+            this.permits = permits;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.model.DeferredDelivery;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Holds the {@link DeferredDelivery} entries for messages whose delivery has failed, and hands each of them back for
+ * delivery once its retry time has come. The delay before each retry doubles, up to the configured maximum, and a
+ * small random amount is added so that deferred messages do not all retry at once.
+ * <p>
+ * Deferred deliveries are kept in a separate queue for each destination domain, ordered by retry time. Only the
+ * domains are kept in a {@link DelayQueue}, so a domain with many deferred messages costs a single entry there, and a
+ * domain which keeps failing does not hold up the retries for any other domain.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class DeliveryRetryService {
+
+    /**
+     * The largest fraction of a retry delay which is added at random.
+     */
+    private static final double RETRY_JITTER = 0.1;
+
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
+    /**
+     * The domains which have deferred deliveries, ordered by their earliest retry time.
+     */
+    private final DelayQueue<DomainQueue> dueDomains = new DelayQueue<>();
+
+    /**
+     * The queues of deferred deliveries, keyed by destination domain. Guarded by this service.
+     */
+    private final Map<String, DomainQueue> domainQueues = new HashMap<>();
+
+    /**
+     * The number of deferred deliveries. Guarded by this service.
+     */
+    private int deferredCount;
+
+    /**
+     * The executor used for handing deferred deliveries back once they are due.
+     */
+    private ExecutorService retryExecutor;
+
+    @Autowired
+    public DeliveryRetryService(DeliveryConfiguration deliveryConfiguration) {
+        this.deliveryConfiguration = deliveryConfiguration;
+    }
+
+    /**
+     * Starts handing deferred deliveries to the given handler once they are due.
+     *
+     * @param retryHandler The handler, which delivers the message again.
+     */
+    public synchronized void start(Consumer<DeferredDelivery> retryHandler) {
+
+        if (retryExecutor != null) {
+            return;
+        }
+
+        retryExecutor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("carrier-delivery-retry").setDaemon(true).build());
+
+        retryExecutor.execute(() -> {
+
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    dispatch(dueDomains.take(), retryHandler);
+                }
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Stops handing back deferred deliveries. The deferred messages are still in the message spool, so they are
+     * delivered again when the spool is next opened.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+
+        if (retryExecutor != null) {
+            retryExecutor.shutdownNow();
+            retryExecutor = null;
+        }
+    }
+
+    /**
+     * Defers the delivery of a spooled message, after another failed attempt.
+     *
+     * @param message      The spooled message. Every recipient must be forwarded to the given domain.
+     * @param domain       The destination domain.
+     * @param attempts     The number of delivery attempts that have failed, including the last one.
+     * @param firstAttempt The time of the first delivery attempt, in milliseconds.
+     * @return The deferred delivery.
+     */
+    public DeferredDelivery defer(SpooledMessage message, String domain, int attempts, long firstAttempt) {
+        return defer(new DeferredDelivery(message, domain, attempts, firstAttempt,
+                System.currentTimeMillis() + getRetryDelay(attempts)));
+    }
+
+    /**
+     * Defers the delivery of a spooled message for the given amount of time, without counting it as a failed attempt.
+     * This is used for deliveries which were held back by the limits of their destination domain.
+     *
+     * @param message      The spooled message. Every recipient must be forwarded to the given domain.
+     * @param domain       The destination domain.
+     * @param attempts     The number of delivery attempts that have failed.
+     * @param firstAttempt The time of the first delivery attempt, in milliseconds.
+     * @param delay        The amount of time to defer the delivery for, in milliseconds.
+     * @return The deferred delivery.
+     */
+    public DeferredDelivery throttle(SpooledMessage message, String domain, int attempts, long firstAttempt,
+                                     long delay) {
+
+        return defer(new DeferredDelivery(message, domain, attempts, firstAttempt, System.currentTimeMillis() + delay));
+    }
+
+    /**
+     * Adds a deferred delivery to the queue for its destination domain.
+     *
+     * @param deferredDelivery The deferred delivery.
+     * @return The deferred delivery.
+     */
+    private DeferredDelivery defer(DeferredDelivery deferredDelivery) {
+        String domain = deferredDelivery.getDomain();
+
+        synchronized (this) {
+            DomainQueue domainQueue = domainQueues.computeIfAbsent(domain, DomainQueue::new);
+            domainQueue.deliveries.add(deferredDelivery);
+            deferredCount++;
+
+            if (domainQueue.deliveries.peek() == deferredDelivery) {
+                dueDomains.remove(domainQueue);
+
+                domainQueue.retryTime = deferredDelivery.getRetryTime();
+                dueDomains.add(domainQueue);
+            }
+        }
+
+        return deferredDelivery;
+    }
+
+    /**
+     * Checks whether a message has been retried for long enough that it should be bounced instead.
+     *
+     * @param firstAttempt The time of the first delivery attempt, in milliseconds.
+     * @return A flag indicating whether the message has reached the maximum age.
+     */
+    public boolean isExpired(long firstAttempt) {
+        return System.currentTimeMillis() - firstAttempt >= TimeUnit.HOURS.toMillis(deliveryConfiguration.getMaxAge());
+    }
+
+    /**
+     * Gets the amount of time to wait before retrying a delivery.
+     *
+     * @param attempts The number of delivery attempts that have failed.
+     * @return The retry delay, in milliseconds.
+     */
+    public long getRetryDelay(int attempts) {
+        long retryDelay = TimeUnit.SECONDS.toMillis(deliveryConfiguration.getRetryDelay());
+        long retryMaxDelay = TimeUnit.SECONDS.toMillis(deliveryConfiguration.getRetryMaxDelay());
+
+        int doublings = Math.min(Math.max(attempts - 1, 0), Long.numberOfLeadingZeros(retryDelay) - 1);
+        long delay = Math.min(retryDelay << doublings, retryMaxDelay);
+
+        return delay + (long) (delay * RETRY_JITTER * ThreadLocalRandom.current().nextDouble());
+    }
+
+    /**
+     * Gets the number of deferred deliveries.
+     *
+     * @return The number of deferred deliveries.
+     */
+    public synchronized int getDeferredCount() {
+        return deferredCount;
+    }
+
+    /**
+     * Gets the number of destination domains with deferred deliveries.
+     *
+     * @return The number of domains.
+     */
+    public synchronized int getDeferredDomainCount() {
+        return domainQueues.size();
+    }
+
+    /**
+     * Hands every due delivery for a domain to the given handler, and queues the domain again if it still has
+     * deliveries waiting.
+     *
+     * @param domainQueue  The queue for a domain, which has just become due.
+     * @param retryHandler The handler.
+     */
+    private void dispatch(DomainQueue domainQueue, Consumer<DeferredDelivery> retryHandler) {
+        List<DeferredDelivery> dueDeliveries = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            dueDomains.remove(domainQueue);
+
+            while (!domainQueue.deliveries.isEmpty() && domainQueue.deliveries.peek().getRetryTime() <= now) {
+                dueDeliveries.add(domainQueue.deliveries.poll());
+            }
+
+            deferredCount -= dueDeliveries.size();
+
+            if (domainQueue.deliveries.isEmpty()) {
+                domainQueues.remove(domainQueue.domain);
+
+            } else {
+                domainQueue.retryTime = domainQueue.deliveries.peek().getRetryTime();
+                dueDomains.add(domainQueue);
+            }
+        }
+
+        for (DeferredDelivery deferredDelivery : dueDeliveries) {
+
+            try {
+                retryHandler.accept(deferredDelivery);
+
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * The deferred deliveries for a single destination domain.
+     */
+    private static class DomainQueue implements Delayed {
+
+        /**
+         * The destination domain.
+         */
+        private final String domain;
+
+        /**
+         * The deferred deliveries, ordered by retry time.
+         */
+        private final PriorityQueue<DeferredDelivery> deliveries = new PriorityQueue<>(
+                Comparator.comparingLong(DeferredDelivery::getRetryTime));
+
+        /**
+         * The earliest retry time of the deferred deliveries, in milliseconds. This is only changed while the queue is
+         * not in the delay queue.
+         */
+        private volatile long retryTime;
+
+        DomainQueue(String domain) {
+            this.domain = domain;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(retryTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(retryTime, ((DomainQueue) other).retryTime);
+        }
+    }
+}
@@ -0,0 +1,523 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.io.ByteSource;
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.configuration.SpoolConfiguration;
+import com.stevesoltys.carrier.exception.CarrierForwardingException;
+import com.stevesoltys.carrier.exception.CarrierMessageParseException;
+import com.stevesoltys.carrier.model.DeferredDelivery;
+import com.stevesoltys.carrier.model.ForwardingResult;
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import com.stevesoltys.carrier.net.CarrierThreads;
+import com.stevesoltys.carrier.net.SMTPMessageParser;
+import com.stevesoltys.carrier.repository.MessageSpoolRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import tech.blueglacier.email.Email;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outbound delivery service. Accepted messages are queued here and forwarded by a bounded pool of worker threads,
+ * so that the SMTP session which received a message does not have to wait for the remote server. Messages are removed
+ * from the {@link MessageSpoolRepository} once they have been forwarded to every recipient.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class MailDeliveryService {
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MailDeliveryService.class);
+
+    /**
+     * The amount of time to wait for queued deliveries to finish when shutting down, in seconds.
+     */
+    private static final long SHUTDOWN_TIMEOUT = 30;
+
+    /**
+     * The amount of time to defer a due retry for when the delivery queue is full, in milliseconds.
+     */
+    private static final long QUEUE_FULL_RETRY_DELAY = 1000;
+
+    /**
+     * The mail forwarding service.
+     */
+    private final MailForwardingService forwardingService;
+
+    /**
+     * The masked address service.
+     */
+    private final MaskedAddressService maskedAddressService;
+
+    /**
+     * The message parser.
+     */
+    private final SMTPMessageParser messageParser;
+
+    /**
+     * The message spool repository.
+     */
+    private final MessageSpoolRepository spoolRepository;
+
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
+    /**
+     * The spool configuration.
+     */
+    private final SpoolConfiguration spoolConfiguration;
+
+    /**
+     * The client configuration.
+     */
+    private final SMTPClientConfiguration clientConfiguration;
+
+    /**
+     * The delivery retry service.
+     */
+    private final DeliveryRetryService retryService;
+
+    /**
+     * The delivery limiter service.
+     */
+    private final DeliveryLimiterService limiterService;
+
+    /**
+     * The timer for parsing spooled messages.
+     */
+    private final Timer parseTimer;
+
+    /**
+     * The counter for recipients that were bounced.
+     */
+    private final Counter bouncedRecipients;
+
+    /**
+     * The counter for recipients that were held back by the limits of their destination domain.
+     */
+    private final Counter throttledRecipients;
+
+    /**
+     * The delivery worker pool. This is created once the configuration has been loaded.
+     */
+    private ThreadPoolExecutor executor;
+
+    @Autowired
+    public MailDeliveryService(MailForwardingService forwardingService, MaskedAddressService maskedAddressService,
+                               SMTPMessageParser messageParser, MessageSpoolRepository spoolRepository,
+                               DeliveryConfiguration deliveryConfiguration, SpoolConfiguration spoolConfiguration,
+                               SMTPClientConfiguration clientConfiguration, DeliveryRetryService retryService,
+                               DeliveryLimiterService limiterService, MeterRegistry meterRegistry) {
+
+        this.forwardingService = forwardingService;
+        this.maskedAddressService = maskedAddressService;
+        this.messageParser = messageParser;
+        this.spoolRepository = spoolRepository;
+        this.deliveryConfiguration = deliveryConfiguration;
+        this.spoolConfiguration = spoolConfiguration;
+        this.clientConfiguration = clientConfiguration;
+        this.retryService = retryService;
+        this.limiterService = limiterService;
+
+        this.parseTimer = Timer.builder("carrier.message.parse")
+                .description("The time taken to parse a spooled message")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+
+        this.bouncedRecipients = meterRegistry.counter("carrier.delivery.bounced");
+        this.throttledRecipients = meterRegistry.counter("carrier.delivery.throttled");
+    }
+
+    /**
+     * Opens the message spool and starts the delivery worker pool. Any messages left in the spool by a previous run
+     * are queued for delivery again, and deferred deliveries are queued again once they are due. When the queue is
+     * full, the thread that submits a message delivers it itself, which slows down the sending client instead of
+     * dropping mail. A due retry is deferred again for a moment instead, so that the retry dispatcher never sends mail
+     * itself. The workers are virtual threads if they are enabled in the configuration.
+     *
+     * @throws IOException If there is an error while opening the message spool.
+     */
+    public synchronized void start() throws IOException {
+
+        if (executor != null) {
+            return;
+        }
+
+        List<SpooledMessage> pendingMessages = spoolRepository.open(spoolConfiguration.getDirectory(),
+                spoolConfiguration.getSegmentSize());
+
+        int threads = deliveryConfiguration.getThreads();
+
+        executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(deliveryConfiguration.getQueueCapacity()),
+                CarrierThreads.newThreadFactory("carrier-delivery-", deliveryConfiguration.isVirtualThreadsEnabled()),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        executor.allowCoreThreadTimeOut(true);
+
+        retryService.start(this::retry);
+
+        pendingMessages.forEach(this::submit);
+    }
+
+    /**
+     * Stops the delivery worker pool, waiting for queued deliveries to finish. Deferred deliveries are left in the
+     * spool.
+     */
+    @PreDestroy
+    public synchronized void stop() {
+
+        if (executor == null) {
+            return;
+        }
+
+        retryService.stop();
+        executor.shutdown();
+
+        try {
+            executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        executor = null;
+    }
+
+    /**
+     * Queues the given spooled message for delivery. The route for each recipient is resolved when it is delivered.
+     *
+     * @param message The spooled message.
+     */
+    public void submit(SpooledMessage message) {
+        submit(message, Collections.emptyMap());
+    }
+
+    /**
+     * Queues the given spooled message for delivery, along the routes that were resolved when its recipients were
+     * accepted. The route for any other recipient is resolved when it is delivered.
+     *
+     * @param message The spooled message.
+     * @param routes  The routes, keyed by recipient.
+     */
+    public void submit(SpooledMessage message, Map<String, Route> routes) {
+        long now = System.currentTimeMillis();
+
+        execute(() -> deliver(message, routes, 0, now));
+    }
+
+    /**
+     * Gets the number of messages waiting for a delivery worker.
+     *
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+        ThreadPoolExecutor executor = this.executor;
+
+        return executor == null ? 0 : executor.getQueue().size();
+    }
+
+    /**
+     * Runs a delivery on the worker pool, or on the calling thread if the pool has not been started or its queue is
+     * full. A delivery submitted after the pool has been stopped is left in the spool.
+     *
+     * @param delivery The delivery.
+     */
+    private void execute(Runnable delivery) {
+        ThreadPoolExecutor executor = this.executor;
+
+        if (executor == null) {
+            delivery.run();
+            return;
+        }
+
+        try {
+            executor.execute(delivery);
+
+        } catch (RejectedExecutionException e) {
+
+            if (!executor.isShutdown()) {
+                delivery.run();
+            }
+        }
+    }
+
+    /**
+     * Queues a deferred delivery which has become due on the worker pool. This is called by the retry dispatcher, so
+     * if the queue is full, the delivery is deferred again for a moment rather than run on the calling thread. A
+     * delivery which becomes due while the pool is being stopped is left in the spool.
+     *
+     * @param deferredDelivery The deferred delivery.
+     */
+    private void retry(DeferredDelivery deferredDelivery) {
+        ThreadPoolExecutor executor = this.executor;
+        SpooledMessage message = deferredDelivery.getMessage();
+
+        if (executor == null) {
+            return;
+        }
+
+        try {
+            executor.execute(() -> deliver(message, Collections.emptyMap(), deferredDelivery.getAttempts(),
+                    deferredDelivery.getFirstAttempt()));
+
+        } catch (RejectedExecutionException e) {
+            retryService.throttle(message, deferredDelivery.getDomain(), deferredDelivery.getAttempts(),
+                    deferredDelivery.getFirstAttempt(), QUEUE_FULL_RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Forwards the given spooled message to each of its recipients. Unless raw forwarding is enabled, the message is
+     * parsed once and rebuilt for each recipient. A message that cannot be parsed is never going to be delivered, so
+     * it is bounced to the sender.
+     * <p>
+     * Recipients whose destination domain, or whose receiving server's host, is over its configured limits are not
+     * forwarded now. Their delivery is deferred for a short while instead, without counting as a failed attempt. If
+     * forwarding fails for some of the recipients, their delivery is deferred and retried later. The deferred
+     * recipients are spooled again in a separate message for each destination domain, so that each domain is retried
+     * on its own and nobody else is sent the message twice. Recipients without a route, recipients which the
+     * receiving server permanently rejected, and recipients which have been retried for longer than the maximum age,
+     * are bounced to the sender instead.
+     *
+     * @param message      The spooled message.
+     * @param routes       The routes that have already been resolved, keyed by recipient.
+     * @param attempts     The number of delivery attempts that have already failed.
+     * @param firstAttempt The time of the first delivery attempt, in milliseconds.
+     */
+    private void deliver(SpooledMessage message, Map<String, Route> routes, int attempts, long firstAttempt) {
+        List<String> undeliverableRecipients = new ArrayList<>();
+        Map<String, List<Route>> domainRoutes = new LinkedHashMap<>();
+
+        for (String recipient : message.getRecipients()) {
+
+            try {
+                Route route = getRoute(recipient, routes);
+                domainRoutes.computeIfAbsent(route.getForwardDomain(), domain -> new ArrayList<>()).add(route);
+
+            } catch (CarrierForwardingException e) {
+                e.printStackTrace();
+                undeliverableRecipients.add(recipient);
+            }
+        }
+
+        List<String> admittedDomains = new ArrayList<>();
+        List<Route> admittedRoutes = new ArrayList<>();
+        List<Route> throttledRoutes = new ArrayList<>();
+
+        for (Map.Entry<String, List<Route>> entry : domainRoutes.entrySet()) {
+
+            if (limiterService.tryAcquire(entry.getKey(), entry.getValue().size())) {
+                admittedDomains.add(entry.getKey());
+                admittedRoutes.addAll(entry.getValue());
+
+            } else {
+                throttledRoutes.addAll(entry.getValue());
+            }
+        }
+
+        throttledRecipients.increment(throttledRoutes.size());
+
+        ForwardingResult result;
+
+        try {
+            result = forward(message, admittedRoutes);
+
+        } finally {
+            admittedDomains.forEach(limiterService::release);
+        }
+
+        List<Route> failedRoutes = result.getFailedRoutes();
+        result.getRejectedRoutes().forEach(route -> undeliverableRecipients.add(route.getAddress()));
+
+        throttledRoutes.addAll(result.getThrottledRoutes());
+        throttledRecipients.increment(result.getThrottledRoutes().size());
+
+        Map<String, List<String>> deferredRecipients = new LinkedHashMap<>();
+        Map<String, List<String>> heldRecipients = new LinkedHashMap<>();
+
+        if (retryService.isExpired(firstAttempt)) {
+            failedRoutes.forEach(route -> undeliverableRecipients.add(route.getAddress()));
+            throttledRoutes.forEach(route -> undeliverableRecipients.add(route.getAddress()));
+
+        } else {
+            failedRoutes.forEach(route -> deferredRecipients.computeIfAbsent(route.getForwardDomain(),
+                    domain -> new ArrayList<>()).add(route.getAddress()));
+            throttledRoutes.forEach(route -> heldRecipients.computeIfAbsent(route.getForwardDomain(),
+                    domain -> new ArrayList<>()).add(route.getAddress()));
+        }
+
+        if (undeliverableRecipients.isEmpty() && deferredRecipients.size() + heldRecipients.size() == 1
+                && failedRoutes.size() + throttledRoutes.size() == message.getRecipients().size()) {
+
+            if (failedRoutes.isEmpty()) {
+                String domain = throttledRoutes.get(0).getForwardDomain();
+                retryService.throttle(message, domain, attempts, firstAttempt, limiterService.getThrottleDelay(domain));
+
+            } else {
+                retryService.defer(message, failedRoutes.get(0).getForwardDomain(), attempts + 1, firstAttempt);
+            }
+
+            return;
+        }
+
+        try {
+            for (Map.Entry<String, List<String>> entry : deferredRecipients.entrySet()) {
+                retryService.defer(respool(message, entry.getValue()), entry.getKey(), attempts + 1, firstAttempt);
+            }
+
+            for (Map.Entry<String, List<String>> entry : heldRecipients.entrySet()) {
+                retryService.throttle(respool(message, entry.getValue()), entry.getKey(), attempts, firstAttempt,
+                        limiterService.getThrottleDelay(entry.getKey()));
+            }
+
+            if (!undeliverableRecipients.isEmpty()) {
+                bounce(message, undeliverableRecipients);
+            }
+
+            spoolRepository.complete(message.getId());
+
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Forwards the given spooled message along each of the given routes, parsing it first unless raw forwarding is
+     * enabled.
+     *
+     * @param message The spooled message.
+     * @param routes  The routes for the recipients.
+     * @return The routes that the message could not be forwarded along, or that were rejected.
+     */
+    private ForwardingResult forward(SpooledMessage message, List<Route> routes) {
+
+        if (routes.isEmpty()) {
+            return new ForwardingResult();
+
+        } else if (clientConfiguration.isRawForwardingEnabled()) {
+            return forwardingService.forward(routes, message);
+        }
+
+        return forwardParsed(message, routes);
+    }
+
+    /**
+     * Spools a copy of the given message for some of its recipients.
+     *
+     * @param message    The spooled message.
+     * @param recipients The recipients of the copy.
+     * @return The spooled copy.
+     * @throws IOException If there is an error while writing to the spool.
+     */
+    private SpooledMessage respool(SpooledMessage message, List<String> recipients) throws IOException {
+        return spoolRepository.append(message.getFrom(), recipients, new ByteSource() {
+
+            @Override
+            public InputStream openStream() {
+                return message.openStream();
+            }
+        });
+    }
+
+    /**
+     * Parses the given spooled message and forwards it along each of the given routes.
+     *
+     * @param message The spooled message.
+     * @param routes  The routes for the recipients.
+     * @return The routes that the message could not be forwarded along, or that were rejected. Every route is rejected
+     * if the message is not a valid MIME message, since it is never going to be delivered, and every route fails if
+     * the message could not be read.
+     */
+    private ForwardingResult forwardParsed(SpooledMessage message, List<Route> routes) {
+        Email email;
+
+        try (InputStream inputStream = message.openStream()) {
+            long startTime = System.nanoTime();
+            email = messageParser.parse(inputStream);
+            parseTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+        } catch (CarrierMessageParseException e) {
+            LOGGER.warn("Could not parse spooled message {}, bouncing it.", message.getId(), e);
+
+            ForwardingResult result = new ForwardingResult();
+            routes.forEach(result::addRejectedRoute);
+
+            return result;
+
+        } catch (IOException e) {
+            LOGGER.error("Could not read spooled message {}, deferring it.", message.getId(), e);
+
+            ForwardingResult result = new ForwardingResult();
+            routes.forEach(result::addFailedRoute);
+
+            return result;
+        }
+
+        return forwardingService.forward(routes, email);
+    }
+
+    /**
+     * Sends a bounce to the sender of the given spooled message, unless the message is itself a bounce. The bounce is
+     * not retried if it fails.
+     *
+     * @param message    The spooled message.
+     * @param recipients The recipients that the message could not be delivered to.
+     */
+    private void bounce(SpooledMessage message, List<String> recipients) {
+        bouncedRecipients.increment(recipients.size());
+
+        if (message.getFrom() == null || message.getFrom().isEmpty()) {
+            return;
+        }
+
+        try {
+            forwardingService.bounce(message, recipients);
+
+        } catch (CarrierForwardingException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the route for the given recipient, resolving it if it was not resolved when the recipient was accepted.
+     *
+     * @param recipient The recipient.
+     * @param routes    The routes that have already been resolved, keyed by recipient.
+     * @return The route.
+     * @throws CarrierForwardingException If the recipient does not have a route.
+     */
+    private Route getRoute(String recipient, Map<String, Route> routes) throws CarrierForwardingException {
+        Route route = routes.get(recipient);
+
+        if (route != null) {
+            return route;
+        }
+
+        return maskedAddressService.resolve(recipient).orElseThrow(() ->
+                new CarrierForwardingException("Could not resolve an active masked address for '" + recipient + "'"));
+    }
+}
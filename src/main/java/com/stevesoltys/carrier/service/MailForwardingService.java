@@ -1,20 +1,47 @@
 package com.stevesoltys.carrier.service;
 
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
 import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
 import com.stevesoltys.carrier.exception.CarrierForwardingException;
+import com.stevesoltys.carrier.exception.CarrierThrottledException;
+import com.stevesoltys.carrier.model.ForwardingResult;
 import com.stevesoltys.carrier.model.MaskedAddress;
+import com.stevesoltys.carrier.model.ReplyAddress;
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.model.SpooledMessage;
 import com.stevesoltys.carrier.net.SMTPMessageFactory;
-import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import com.stevesoltys.carrier.net.SMTPTransportPool;
+import com.stevesoltys.carrier.repository.ReplyAddressBatchWriter;
+import com.stevesoltys.carrier.repository.ReplyAddressRepository;
+import com.sun.mail.smtp.SMTPAddressFailedException;
+import com.sun.mail.smtp.SMTPSendFailedException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Propagation;
-import org.springframework.transaction.annotation.Transactional;
 import tech.blueglacier.email.Email;
 
-import javax.mail.Transport;
-import javax.mail.internet.AddressException;
+import javax.mail.Address;
+import javax.mail.MessagingException;
+import javax.mail.SendFailedException;
 import javax.mail.internet.InternetAddress;
-import java.util.Optional;
+import javax.mail.internet.InternetHeaders;
+import javax.mail.internet.MimeMessage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The e-mail forwarding service.
@@ -22,13 +49,48 @@ import java.util.Optional;
  * @author Steve Soltys
  */
 @Service
-@Transactional(propagation = Propagation.REQUIRES_NEW)
 public class MailForwardingService {
 
     /**
-     * The masked address repository.
+     * The maximum number of destination domains that send times are recorded for separately. Any other domain is
+     * recorded as 'other', so that the number of metrics stays bounded.
      */
-    private final MaskedAddressRepository maskedAddressRepository;
+    private static final int MAXIMUM_TIMED_DOMAINS = 100;
+
+    /**
+     * The domain tag used for any destination domain past the maximum.
+     */
+    private static final String OTHER_DOMAIN = "other";
+
+    /**
+     * The 'to' header of a reply which is shared between several recipients.
+     */
+    private static final String UNDISCLOSED_RECIPIENTS = "undisclosed-recipients:;";
+
+    /**
+     * The lowest SMTP reply code which means that the receiving server will never accept the message.
+     */
+    private static final int PERMANENT_FAILURE_CODE = 500;
+
+    /**
+     * The masked address service.
+     */
+    private final MaskedAddressService maskedAddressService;
+
+    /**
+     * The reply address repository.
+     */
+    private final ReplyAddressRepository replyAddressRepository;
+
+    /**
+     * The reply address batch writer.
+     */
+    private final ReplyAddressBatchWriter replyAddressWriter;
+
+    /**
+     * The reply address service.
+     */
+    private final ReplyAddressService replyAddressService;
 
     /**
      * The mail resolver service.
@@ -40,130 +102,483 @@ public class MailForwardingService {
      */
     private final SMTPClientConfiguration clientConfiguration;
 
+    /**
+     * The delivery configuration.
+     */
+    private final DeliveryConfiguration deliveryConfiguration;
+
     /**
      * The message factory.
      */
     private final SMTPMessageFactory messageFactory;
 
-    @Autowired
-    public MailForwardingService(MaskedAddressRepository maskedAddressRepository, MailResolverService resolverService,
-                                 SMTPClientConfiguration clientConfiguration, SMTPMessageFactory messageFactory) {
+    /**
+     * The SMTP transport pool.
+     */
+    private final SMTPTransportPool transportPool;
 
-        this.maskedAddressRepository = maskedAddressRepository;
+    /**
+     * The meter registry.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The destination domains that send times are recorded for separately.
+     */
+    private final Set<String> timedDomains = ConcurrentHashMap.newKeySet();
+
+    @Autowired
+    public MailForwardingService(MaskedAddressService maskedAddressService,
+                                 ReplyAddressRepository replyAddressRepository,
+                                 ReplyAddressBatchWriter replyAddressWriter, ReplyAddressService replyAddressService,
+                                 MailResolverService resolverService, SMTPClientConfiguration clientConfiguration,
+                                 DeliveryConfiguration deliveryConfiguration, SMTPMessageFactory messageFactory,
+                                 SMTPTransportPool transportPool, MeterRegistry meterRegistry) {
+
+        this.maskedAddressService = maskedAddressService;
+        this.replyAddressRepository = replyAddressRepository;
+        this.replyAddressWriter = replyAddressWriter;
+        this.replyAddressService = replyAddressService;
         this.resolverService = resolverService;
         this.clientConfiguration = clientConfiguration;
+        this.deliveryConfiguration = deliveryConfiguration;
         this.messageFactory = messageFactory;
+        this.transportPool = transportPool;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Forwards the given e-mail along each of the given routes, as described in {@link #forward(List, String,
+     * MessageComposer)}.
+     *
+     * @param routes The routes for the recipients.
+     * @param email  The e-mail.
+     * @return The routes that the e-mail could not be forwarded along, or that were rejected.
+     */
+    public ForwardingResult forward(List<Route> routes, Email email) {
+        return forward(routes, email.getFromEmailHeaderValue(),
+                (fromAddress, toAddress) -> messageFactory.createMimeMessage(email, fromAddress, toAddress));
     }
 
     /**
-     * Forwards the given e-mail to the correct destination.
+     * Forwards the given spooled message along each of the given routes as it was received, only rewriting the
+     * headers needed for masking, as described in {@link #forward(List, String, MessageComposer)}.
      *
-     * @param to    The e-mail address to find a {@link MaskedAddress} for.
-     * @param email The e-mail.
-     * @throws CarrierForwardingException If there is an error while forwarding the e-mail.
+     * @param routes  The routes for the recipients.
+     * @param message The spooled message.
+     * @return The routes that the message could not be forwarded along, or that were rejected.
      */
-    public void forward(String to, Email email) throws CarrierForwardingException {
+    public ForwardingResult forward(List<Route> routes, SpooledMessage message) {
+        String originalFrom;
 
         try {
-            Optional<MaskedAddress> maskedAddressOptional = getMaskedAddress(to);
+            originalFrom = readOriginalFrom(message);
 
-            if (!maskedAddressOptional.isPresent()) {
+        } catch (CarrierForwardingException ex) {
+            ForwardingResult result = new ForwardingResult();
+            routes.forEach(result::addFailedRoute);
 
-                throw new CarrierForwardingException("Could not resolve an active masked address for '"
-                        + email.getToEmailHeaderValue() + "'");
-            }
+            return result;
+        }
 
-            MaskedAddress maskedAddress = maskedAddressOptional.get();
+        return forward(routes, originalFrom,
+                (fromAddress, toAddress) -> messageFactory.createRawMimeMessage(message, fromAddress, toAddress));
+    }
 
-            if (maskedAddress.getReplyAddresses().containsKey(to)) {
-                forwardReply(email, maskedAddress, to);
+    /**
+     * Sends a bounce to the sender of the given spooled message, for recipients that it could not be delivered to.
+     *
+     * @param message    The spooled message.
+     * @param recipients The recipients that the message could not be delivered to.
+     * @throws CarrierForwardingException If there is an error while sending the bounce.
+     */
+    public void bounce(SpooledMessage message, List<String> recipients) throws CarrierForwardingException {
 
-            } else {
-                forwardIncomingMail(email, maskedAddress);
-            }
+        try {
+            InternetAddress toAddress = new InternetAddress(message.getFrom());
+
+            send(toAddress.getAddress(), messageFactory.createBounceMessage(message, recipients),
+                    new Address[]{toAddress});
 
         } catch (Exception ex) {
             ex.printStackTrace();
 
             throw new CarrierForwardingException(ex.toString());
         }
+    }
 
+    /**
+     * Reads the value of the 'from' header in a spooled message.
+     *
+     * @param message The spooled message.
+     * @return The value of the 'from' header.
+     * @throws CarrierForwardingException If the headers could not be read.
+     */
+    private String readOriginalFrom(SpooledMessage message) throws CarrierForwardingException {
+
+        try (InputStream inputStream = message.openStream()) {
+            return new InternetHeaders(inputStream).getHeader("From", ",");
+
+        } catch (IOException | MessagingException ex) {
+            ex.printStackTrace();
+
+            throw new CarrierForwardingException(ex.toString());
+        }
     }
 
     /**
-     * Finds a masked address for the given e-mail.
+     * Forwards a message along each of the given routes, one destination domain after another, so that the
+     * recipients for a domain are sent over the same pooled connection. Incoming mail for a masked address is always
+     * forwarded separately, since its 'from' header is rewritten to a reply address for each recipient. Replies
+     * through the same masked address share their 'from' header, so the replies to recipients in the same domain are
+     * sent as a single message, with one RCPT TO for each recipient. A reply to a domain whose mail servers cannot be
+     * resolved is never grouped, so that its failure is its own.
+     * <p>
+     * A route fails permanently if the receiving server rejects its recipient, or the whole message, with a 5xx reply.
+     * A route is throttled if the receiving server's host is over its limits. Any other error, such as a 4xx reply, a
+     * connection error or a DNS error, is treated as temporary.
      *
-     * @param address The recipient e-mail address.
-     * @return An optional, possibly containing a masked address.
-     * @throws AddressException If there is an error while parsing the 'to' header in the e-mail.
+     * @param routes       The routes for the recipients.
+     * @param originalFrom The value of the 'from' header in the received message.
+     * @param composer     The composer used for creating the forwarded message.
+     * @return The routes that the message could not be forwarded along, or that were rejected.
      */
-    private Optional<MaskedAddress> getMaskedAddress(String address) throws AddressException {
+    private ForwardingResult forward(List<Route> routes, String originalFrom, MessageComposer composer) {
+        ForwardingResult result = new ForwardingResult();
+
+        Map<String, List<Route>> routesByDomain = new LinkedHashMap<>();
+        routes.forEach(route -> routesByDomain.computeIfAbsent(route.getForwardDomain(), domain -> new ArrayList<>())
+                .add(route));
+
+        Map<String, List<Route>> replyGroups = new LinkedHashMap<>();
+
+        for (List<Route> domainRoutes : routesByDomain.values()) {
+
+            for (Route route : domainRoutes) {
 
-        Optional<MaskedAddress> replyAddressOptional = maskedAddressRepository.findByReplyAddress(address);
+                if (route.getKind() == Route.Kind.MASKED) {
+                    forward(route, originalFrom, composer, result);
+                    continue;
+                }
 
-        if (replyAddressOptional.isPresent()) {
-            return replyAddressOptional;
+                if (resolverService.resolve(route.getReplyTarget()).isEmpty()) {
+                    forward(route, originalFrom, composer, result);
+                    continue;
+                }
+
+                String groupKey = route.getMaskedAddress() + " " + route.getForwardDomain();
+                replyGroups.computeIfAbsent(groupKey, key -> new ArrayList<>()).add(route);
+            }
+        }
+
+        for (List<Route> replyGroup : replyGroups.values()) {
+
+            if (replyGroup.size() == 1) {
+                forward(replyGroup.get(0), originalFrom, composer, result);
+                continue;
+            }
+
+            try {
+                forwardSharedReply(composer, replyGroup);
+
+            } catch (Exception ex) {
+                fail(replyGroup, ex, result);
+            }
         }
 
-        return maskedAddressRepository.findByAddress(address);
+        return result;
+    }
+
+    /**
+     * Forwards a message along the given route, recording the route if forwarding fails.
+     *
+     * @param route        The route for the recipient.
+     * @param originalFrom The value of the 'from' header in the received message.
+     * @param composer     The composer used for creating the forwarded message.
+     * @param result       The result that a failed route is recorded in.
+     */
+    private void forward(Route route, String originalFrom, MessageComposer composer, ForwardingResult result) {
+
+        try {
+            if (route.getKind() == Route.Kind.MASKED) {
+                forwardIncomingMail(composer, route, originalFrom);
+                return;
+            }
+
+            if (route.getKind() == Route.Kind.REPLY) {
+                replyAddressRepository.updateLastUsed(route.getAddress(), new Date());
+            }
+
+            forwardReply(composer, route.getMaskedAddress(), route.getReplyTarget());
+
+        } catch (Exception ex) {
+            fail(Collections.singletonList(route), ex, result);
+        }
+    }
+
+    /**
+     * Records the given routes as failed, after forwarding along them threw the given exception. The routes are
+     * recorded as throttled if the receiving server's host is over its limits, and each route is recorded as rejected
+     * if the exception is a permanent rejection of its recipient.
+     *
+     * @param routes The routes.
+     * @param ex     The exception.
+     * @param result The result that the routes are recorded in.
+     */
+    private void fail(List<Route> routes, Exception ex, ForwardingResult result) {
+
+        if (ex instanceof CarrierThrottledException) {
+            routes.forEach(result::addThrottledRoute);
+            return;
+        }
+
+        ex.printStackTrace();
+
+        meterRegistry.counter("carrier.forward.failures", "exception", ex.getClass().getSimpleName()).increment();
+
+        for (Route route : routes) {
+
+            if (isRejected(ex, route.getForwardAddress())) {
+                result.addRejectedRoute(route);
+
+            } else {
+                result.addFailedRoute(route);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the given exception is a permanent rejection of the given recipient. If the receiving server
+     * rejected individual recipients, only their own reply codes are considered, so that a recipient which was not
+     * rejected is retried. Otherwise, a 5xx reply to the message as a whole rejects every recipient.
+     *
+     * @param ex      The exception thrown while sending the message.
+     * @param address The envelope recipient.
+     * @return A flag indicating whether the recipient was permanently rejected.
+     */
+    private static boolean isRejected(Exception ex, String address) {
+        boolean addressFailed = false;
+
+        for (Exception next = ex; next != null; next = next instanceof MessagingException
+                ? ((MessagingException) next).getNextException() : null) {
+
+            if (next instanceof SMTPAddressFailedException) {
+                SMTPAddressFailedException addressFailedException = (SMTPAddressFailedException) next;
+                addressFailed = true;
+
+                if (addressFailedException.getAddress().getAddress().equalsIgnoreCase(address)) {
+                    return addressFailedException.getReturnCode() >= PERMANENT_FAILURE_CODE;
+                }
+            }
+        }
+
+        return !addressFailed && ex instanceof SMTPSendFailedException
+                && ((SMTPSendFailedException) ex).getReturnCode() >= PERMANENT_FAILURE_CODE;
     }
 
     /**
      * Forwards a reply to an e-mail.
      *
-     * @param email         The parsed e-mail.
-     * @param maskedAddress The masked address that was used for the previous e-mail.
-     * @param replyAddress  The address that the reply was sent to for forwarding.
+     * @param composer      The composer used for creating the forwarded message.
+     * @param maskedAddress The masked address that the original e-mail was sent to.
+     * @param sender        The original sender, which the reply is forwarded to.
+     * @throws Exception If there is an error while forwarding the reply.
+     */
+    private void forwardReply(MessageComposer composer, String maskedAddress, String sender) throws Exception {
+
+        InternetAddress fromAddress = new InternetAddress(maskedAddress);
+        InternetAddress toAddress = new InternetAddress(sender);
+
+        send(sender, composer.compose(fromAddress, toAddress), new Address[]{toAddress});
+    }
+
+    /**
+     * Forwards a reply to several of the original senders of e-mails to the same masked address, as a single message.
+     * The recipients do not see each other's addresses, since the 'to' header of the shared message lists none of
+     * them.
+     *
+     * @param composer The composer used for creating the forwarded message.
+     * @param routes   The reply routes, which all share the same masked address and destination domain.
      * @throws Exception If there is an error while forwarding the reply.
      */
-    private void forwardReply(Email email, MaskedAddress maskedAddress, String replyAddress) throws Exception {
+    private void forwardSharedReply(MessageComposer composer, List<Route> routes) throws Exception {
+        Date now = new Date();
+        Address[] toAddresses = new Address[routes.size()];
+
+        for (int i = 0; i < routes.size(); i++) {
+            Route route = routes.get(i);
+
+            if (route.getKind() == Route.Kind.REPLY) {
+                replyAddressRepository.updateLastUsed(route.getAddress(), now);
+            }
+
+            toAddresses[i] = new InternetAddress(route.getReplyTarget());
+        }
+
+        InternetAddress fromAddress = new InternetAddress(routes.get(0).getMaskedAddress());
+        MimeMessage message = composer.compose(fromAddress, (InternetAddress) toAddresses[0]);
 
-        String replyForwardAddress = maskedAddress.getReplyAddresses().remove(replyAddress);
-        updateHost(replyForwardAddress);
+        try {
+            message.setHeader("To", UNDISCLOSED_RECIPIENTS);
 
-        InternetAddress fromAddress = new InternetAddress(maskedAddress.getAddress());
-        InternetAddress toAddress = new InternetAddress(replyForwardAddress);
+        } catch (MessagingException ex) {
+            messageFactory.release(message);
+            throw ex;
+        }
 
-        Transport.send(messageFactory.createMimeMessage(email, fromAddress, toAddress));
+        send(routes.get(0).getReplyTarget(), message, toAddresses);
     }
 
     /**
-     * Forwards incoming mail to the corresponding address.
+     * Forwards incoming mail to the destination of the masked address. If stateless reply addresses are enabled, the
+     * reply address is encoded by the {@link ReplyAddressService}. Otherwise, a random reply address is generated and
+     * queued to be stored, and the message is only sent once it has been committed. If it is not committed within
+     * the delivery timeout, forwarding fails, and is retried later.
      *
-     * @param email         The parsed e-mail.
-     * @param maskedAddress The masked address that was triggered for this e-mail.
+     * @param composer     The composer used for creating the forwarded message.
+     * @param route        The route for the masked address that was triggered for this e-mail.
+     * @param originalFrom The value of the 'from' header in the received message.
      * @throws Exception If there is an error while forwarding the e-mail.
      */
-    private void forwardIncomingMail(Email email, MaskedAddress maskedAddress) throws Exception {
+    private void forwardIncomingMail(MessageComposer composer, Route route, String originalFrom) throws Exception {
+
+        InternetAddress originalFromAddress = new InternetAddress(originalFrom);
+        InternetAddress toAddress = new InternetAddress(route.getDestination());
+
+        String replyAddress;
+        CompletableFuture<Void> replyAddressWrite = null;
 
-        InternetAddress originalFromAddress = new InternetAddress(email.getFromEmailHeaderValue());
+        if (replyAddressService.isEnabled()) {
+            replyAddress = replyAddressService.encode(route.getMaskedAddress(), originalFromAddress.getAddress());
 
-        String domain = clientConfiguration.getDomain();
-        InternetAddress replyAddress = maskedAddress.generateReplyAddress(domain, originalFromAddress);
+        } else {
+            MaskedAddress maskedAddress = new MaskedAddress(route.getMaskedAddress(), route.getDestination());
+            ReplyAddress generatedReplyAddress = maskedAddress.generateReplyAddress(clientConfiguration.getDomain(),
+                    originalFromAddress);
 
-        InternetAddress toAddress = new InternetAddress(maskedAddress.getDestination());
-        InternetAddress fromAddress = new InternetAddress(replyAddress.getAddress());
+            replyAddress = generatedReplyAddress.getAddress();
+            replyAddressWrite = replyAddressWriter.write(generatedReplyAddress);
+        }
+
+        InternetAddress fromAddress = new InternetAddress(replyAddress);
         fromAddress.setPersonal(originalFromAddress.getAddress());
 
-        updateHost(toAddress.getAddress());
-        Transport.send(messageFactory.createMimeMessage(email, fromAddress, toAddress));
+        MimeMessage message = composer.compose(fromAddress, toAddress);
+
+        if (replyAddressWrite != null) {
+
+            try {
+                replyAddressWrite.get(deliveryConfiguration.getTimeout(), TimeUnit.SECONDS);
+
+            } catch (ExecutionException | InterruptedException | TimeoutException ex) {
+                messageFactory.release(message);
+                throw ex;
+            }
+
+            maskedAddressService.invalidateReplyAddress(replyAddress);
+        }
+
+        send(toAddress.getAddress(), message, new Address[]{toAddress});
     }
 
     /**
-     * Updates the current SMTP host server that we are connecting to.
+     * Sends a message to the given destination. Each of the destination's SMTP servers is tried in order of
+     * preference, until one of them accepts the message or rejects it outright, or one of them is over its limits. The
+     * message is released afterwards.
+     *
+     * @param destination The destination e-mail address, used for resolving the SMTP servers.
+     * @param message     The message.
+     * @param recipients  The envelope recipients, which all share the destination's SMTP servers.
+     * @throws CarrierForwardingException If the destination's SMTP servers could not be resolved.
+     * @throws CarrierThrottledException  If one of the SMTP servers is over its limits.
+     * @throws MessagingException         If the message could not be sent to any of the SMTP servers.
+     */
+    private void send(String destination, MimeMessage message, Address[] recipients)
+            throws CarrierForwardingException, MessagingException {
+
+        try {
+            List<String> hosts = resolverService.resolve(destination);
+
+            if (hosts.isEmpty()) {
+                throw new CarrierForwardingException("Could not resolve an active MX record for '" + destination + "'");
+            }
+
+            MessagingException lastException = null;
+
+            for (String host : hosts) {
+                long startTime = System.nanoTime();
+                String result = "failed";
+
+                try {
+                    transportPool.send(host, message, recipients);
+                    result = "sent";
+                    return;
+
+                } catch (SendFailedException e) {
+                    result = "rejected";
+                    throw e;
+
+                } catch (CarrierThrottledException e) {
+                    result = "throttled";
+                    throw e;
+
+                } catch (MessagingException e) {
+                    lastException = e;
+
+                } finally {
+                    Timer.builder("carrier.smtp.send")
+                            .tag("domain", getDomainTag(destination))
+                            .tag("result", result)
+                            .register(meterRegistry)
+                            .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+                }
+            }
+
+            throw lastException;
+
+        } finally {
+            messageFactory.release(message);
+        }
+    }
+
+    /**
+     * Gets the domain tag used for recording the send time to the given destination.
      *
      * @param destination The destination e-mail address.
-     * @throws CarrierForwardingException If there is an error setting the host.
+     * @return The lowercase domain of the destination, or 'other' if too many domains are already recorded.
      */
-    private void updateHost(String destination) throws CarrierForwardingException {
+    private String getDomainTag(String destination) {
+        String domain = destination.substring(destination.lastIndexOf('@') + 1).toLowerCase(Locale.ROOT);
+
+        if (timedDomains.contains(domain)) {
+            return domain;
+        }
 
-        Optional<String> destinationHostOptional = resolverService.resolve(destination);
+        synchronized (timedDomains) {
 
-        if (!destinationHostOptional.isPresent()) {
-            throw new CarrierForwardingException("Could not resolve an active MX record for '" + destination + "'");
+            if (timedDomains.size() < MAXIMUM_TIMED_DOMAINS) {
+                timedDomains.add(domain);
+                return domain;
+            }
         }
 
-        System.setProperty("mail.smtp.host", destinationHostOptional.get());
+        return OTHER_DOMAIN;
     }
 
+    /**
+     * Creates the message that is forwarded, given its rewritten addresses.
+     */
+    @FunctionalInterface
+    private interface MessageComposer {
+
+        /**
+         * Creates the forwarded message.
+         *
+         * @param fromAddress The 'from' address.
+         * @param toAddress   The 'to' address.
+         * @return The MIME message.
+         * @throws Exception If there is an error while creating the MIME message.
+         */
+        MimeMessage compose(InternetAddress fromAddress, InternetAddress toAddress) throws Exception;
+    }
 }
@@ -1,7 +1,12 @@
 package com.stevesoltys.carrier.service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.TreeMultimap;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.xbill.DNS.Lookup;
 import org.xbill.DNS.Record;
@@ -9,12 +14,17 @@ import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * The mail resolver service. Used to resolve a SMTP server address by taking the domain in an e-mail address,
- * doing a DNS lookup, and parsing the MX records.
+ * doing a DNS lookup, and parsing the MX records. Decoded records are cached per domain for as long as their TTL
+ * allows, and domains without MX records are cached for a fixed amount of time. When a domain has no MX records but
+ * does have an address record, the domain itself is used as the mail server, as described in RFC 5321.
  *
  * @author Steve Soltys
  */
@@ -27,59 +37,204 @@ public class MailResolverService {
     private static final Pattern DOMAIN_MATCH_PATTERN = Pattern.compile("([^@]*)@(.*)");
 
     /**
-     * Attempts to resolve an SMTP server address, given the destination e-mail address.
+     * The maximum number of domains kept in the record cache.
+     */
+    private static final int MAXIMUM_CACHE_SIZE = 10000;
+
+    /**
+     * The maximum amount of time that records are cached for, in seconds, regardless of their TTL.
+     */
+    private static final long MAXIMUM_TTL = TimeUnit.DAYS.toSeconds(1);
+
+    /**
+     * The amount of time that a domain without MX records is cached for, in seconds.
+     */
+    private static final long NEGATIVE_TTL = TimeUnit.MINUTES.toSeconds(5);
+
+    /**
+     * The decoded MX records, keyed by domain.
+     */
+    private final Cache<String, CachedRecords> recordCache = CacheBuilder.newBuilder()
+            .maximumSize(MAXIMUM_CACHE_SIZE)
+            .expireAfterWrite(MAXIMUM_TTL, TimeUnit.SECONDS)
+            .build();
+
+    /**
+     * The number of lookups that were answered from the record cache.
+     */
+    private final AtomicLong cacheHits = new AtomicLong();
+
+    /**
+     * The number of lookups that required a DNS query.
+     */
+    private final AtomicLong cacheMisses = new AtomicLong();
+
+    /**
+     * The timer for DNS lookups.
+     */
+    private final Timer lookupTimer;
+
+    @Autowired
+    public MailResolverService(MeterRegistry meterRegistry) {
+        this.lookupTimer = Timer.builder("carrier.dns.resolve")
+                .description("The time taken to look up the MX records for a domain")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Attempts to resolve the SMTP server addresses, given the destination e-mail address. Servers are ordered by
+     * preference, and servers with an equal preference are shuffled so that load is spread between them.
      *
      * @param email The e-mail address used for the lookup.
-     * @return An optional, potentially containing
+     * @return The SMTP server addresses, in the order they should be tried. This is empty if none could be found.
      */
-    protected Optional<String> resolve(String email) {
+    protected List<String> resolve(String email) {
         Optional<String> domainOptional = extractDomain(email);
 
         if (!domainOptional.isPresent()) {
-            return Optional.empty();
+            return Collections.emptyList();
+        }
+
+        String mailDomain = domainOptional.get().toLowerCase(Locale.ROOT);
+        CachedRecords cachedRecords = recordCache.getIfPresent(mailDomain);
+
+        if (cachedRecords != null && !cachedRecords.isExpired()) {
+            cacheHits.incrementAndGet();
+
+        } else {
+            cacheMisses.incrementAndGet();
+
+            long startTime = System.nanoTime();
+            cachedRecords = lookup(mailDomain);
+            lookupTimer.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+
+            if (cachedRecords == null) {
+                return Collections.emptyList();
+            }
+
+            recordCache.put(mailDomain, cachedRecords);
         }
 
-        String mailDomain = domainOptional.get();
+        return orderRecords(cachedRecords.records);
+    }
+
+    /**
+     * Gets the number of lookups that were answered from the record cache.
+     *
+     * @return The number of cache hits.
+     */
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    /**
+     * Gets the number of lookups that required a DNS query.
+     *
+     * @return The number of cache misses.
+     */
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    /**
+     * Gets the number of domains in the record cache.
+     *
+     * @return The cache size.
+     */
+    public long getCacheSize() {
+        return recordCache.size();
+    }
+
+    /**
+     * Looks up the MX records for the given domain.
+     *
+     * @param mailDomain The domain.
+     * @return The decoded records, or null if the lookup failed and should not be cached.
+     */
+    private CachedRecords lookup(String mailDomain) {
 
         try {
             Lookup dnsLookup = new Lookup(mailDomain, Type.MX);
-            List<Record> records = Arrays.asList(dnsLookup.run());
+            Record[] records = dnsLookup.run();
 
-            if (records.isEmpty()) {
-                return Optional.empty();
+            if (dnsLookup.getResult() == Lookup.HOST_NOT_FOUND) {
+                return new CachedRecords(TreeMultimap.create(), NEGATIVE_TTL);
+
+            } else if (dnsLookup.getResult() == Lookup.TYPE_NOT_FOUND) {
+                return lookupImplicitRecord(mailDomain);
+            }
+
+            if (records == null || records.length == 0) {
+                return null;
+            }
+
+            long ttl = MAXIMUM_TTL;
+
+            for (Record record : records) {
+                ttl = Math.min(ttl, record.getTTL());
             }
 
-            return chooseBestRecord(records);
+            return new CachedRecords(decodeRecords(Arrays.asList(records)), ttl);
 
         } catch (TextParseException e) {
             e.printStackTrace();
         }
 
-        return Optional.empty();
+        return null;
+    }
+
+    /**
+     * Looks up the address records for a domain which has no MX records. If there are any, the domain itself is
+     * treated as its only mail server.
+     *
+     * @param mailDomain The domain.
+     * @return The implicit MX record, or a negative entry if the domain has no address records.
+     * @throws TextParseException If the domain is invalid.
+     */
+    private CachedRecords lookupImplicitRecord(String mailDomain) throws TextParseException {
+
+        for (int type : new int[]{Type.A, Type.AAAA}) {
+            Record[] records = new Lookup(mailDomain, type).run();
+
+            if (records != null && records.length > 0) {
+                TreeMultimap<Integer, String> recordMap = TreeMultimap.create(Ordering.natural(), Ordering.natural());
+                recordMap.put(0, mailDomain + ".");
+
+                return new CachedRecords(recordMap, Math.min(MAXIMUM_TTL, records[0].getTTL()));
+            }
+        }
+
+        return new CachedRecords(TreeMultimap.create(), NEGATIVE_TTL);
     }
 
     /**
-     * Chooses the best SMTP server, given a list of MX records.
-     * TODO: Actually choose the best record!
+     * Orders the given MX records by preference. Records that share a preference are shuffled, so that load is
+     * spread between them.
      *
-     * @param records The MX records.
-     * @return An optional, possibly containing an SMTP server address.
+     * @param recordMap The decoded MX records.
+     * @return The SMTP server addresses, in the order they should be tried.
      */
-    private Optional<String> chooseBestRecord(List<Record> records) {
-        TreeMultimap<Integer, String> recordMap = decodeRecords(records);
+    List<String> orderRecords(TreeMultimap<Integer, String> recordMap) {
+        List<String> orderedRecords = new ArrayList<>(recordMap.size());
+        Random random = ThreadLocalRandom.current();
 
-        if(!recordMap.isEmpty()) {
-            List<String> topRecords = new LinkedList<>(recordMap.asMap().firstEntry().getValue());
+        for (Collection<String> preferenceGroup : recordMap.asMap().values()) {
+            List<String> hosts = new ArrayList<>(preferenceGroup.size());
 
-            if(!topRecords.isEmpty()) {
-                String record = topRecords.get(0);
+            for (String record : preferenceGroup) {
+                String host = record.endsWith(".") ? record.substring(0, record.length() - 1) : record;
 
-                return Optional.of(record.substring(0, record.length() - 1));
+                if (!host.isEmpty()) {
+                    hosts.add(host);
+                }
             }
 
+            Collections.shuffle(hosts, random);
+            orderedRecords.addAll(hosts);
         }
 
-        return Optional.empty();
+        return orderedRecords;
     }
 
     /**
@@ -88,7 +243,7 @@ public class MailResolverService {
      * @param records The list of MX records.
      * @return The tree map containing ranked MX records.
      */
-    private TreeMultimap<Integer, String> decodeRecords(List<Record> records) {
+    TreeMultimap<Integer, String> decodeRecords(List<Record> records) {
         TreeMultimap<Integer, String> recordMap = TreeMultimap.create(Ordering.natural(), Ordering.natural());
 
         records.forEach(record -> {
@@ -129,4 +284,34 @@ public class MailResolverService {
 
         return Optional.empty();
     }
+
+    /**
+     * Decoded MX records for a domain, along with the time at which they expire.
+     */
+    private static class CachedRecords {
+
+        /**
+         * The decoded MX records. This is empty if the domain has no MX records.
+         */
+        private final TreeMultimap<Integer, String> records;
+
+        /**
+         * The time at which these records expire, in milliseconds.
+         */
+        private final long expires;
+
+        CachedRecords(TreeMultimap<Integer, String> records, long ttl) {
+            this.records = records;
+            this.expires = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(ttl);
+        }
+
+        /**
+         * Checks whether these records have expired.
+         *
+         * @return A flag indicating whether the records have expired.
+         */
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expires;
+        }
+    }
 }
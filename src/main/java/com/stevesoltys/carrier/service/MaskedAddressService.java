@@ -0,0 +1,211 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.stevesoltys.carrier.model.EncodedReplyAddress;
+import com.stevesoltys.carrier.model.MaskedAddress;
+import com.stevesoltys.carrier.model.ReplyAddress;
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The masked address service. Resolves recipient addresses to a {@link Route}, and keeps a bounded, read-through
+ * cache of the routes for {@link MaskedAddress} and {@link ReplyAddress} entries, including lookups for addresses that
+ * do not exist, so that repeated recipients are answered from memory. Entries expire after a few minutes, and are
+ * invalidated when a masked address is created or deleted. A lookup that was already running when an invalidation
+ * happened may have read the database before the change, so its result is not cached. Addresses rejected by the
+ * {@link AddressFilterService} are not looked up or cached at all.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class MaskedAddressService {
+
+    /**
+     * The maximum number of routes kept in the cache.
+     */
+    private static final int MAXIMUM_CACHE_SIZE = 100000;
+
+    /**
+     * The amount of time that a lookup is cached for, in seconds.
+     */
+    private static final long CACHE_TTL = TimeUnit.MINUTES.toSeconds(5);
+
+    /**
+     * The masked address repository.
+     */
+    private final MaskedAddressRepository maskedAddressRepository;
+
+    /**
+     * The reply address service.
+     */
+    private final ReplyAddressService replyAddressService;
+
+    /**
+     * The address filter service.
+     */
+    private final AddressFilterService addressFilterService;
+
+    /**
+     * The cached routes, keyed by recipient address.
+     */
+    private final Cache<String, Optional<Route>> routes;
+
+    /**
+     * The number of invalidations so far, used for telling whether one happened while a route was being looked up.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    @Autowired
+    public MaskedAddressService(MaskedAddressRepository maskedAddressRepository,
+                                ReplyAddressService replyAddressService,
+                                AddressFilterService addressFilterService) {
+
+        this.maskedAddressRepository = maskedAddressRepository;
+        this.replyAddressService = replyAddressService;
+        this.addressFilterService = addressFilterService;
+
+        this.routes = CacheBuilder.newBuilder()
+                .maximumSize(MAXIMUM_CACHE_SIZE)
+                .expireAfterWrite(CACHE_TTL, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Resolves the route for a recipient address. An {@link EncodedReplyAddress} is decoded, and only its masked
+     * address is looked up.
+     *
+     * @param address The recipient address.
+     * @return An optional, possibly containing the route.
+     */
+    public Optional<Route> resolve(String address) {
+        Optional<EncodedReplyAddress> encodedReplyAddressOptional = replyAddressService.decode(address);
+
+        if (encodedReplyAddressOptional.isPresent()) {
+            EncodedReplyAddress encodedReplyAddress = encodedReplyAddressOptional.get();
+
+            return lookup(encodedReplyAddress.getMaskedAddress())
+                    .filter(route -> route.getKind() == Route.Kind.MASKED)
+                    .map(route -> new Route(Route.Kind.ENCODED_REPLY, address, route.getMaskedAddress(),
+                            route.getDestination(), encodedReplyAddress.getSender()));
+        }
+
+        return lookup(address);
+    }
+
+    /**
+     * Invalidates the cached route for the given masked address, and for any reply addresses generated for it. This
+     * must be called when a masked address is created or deleted. The address is also added to the address filter,
+     * which is harmless for a deleted address.
+     *
+     * @param address The e-mail address for the masked address.
+     */
+    public void invalidate(String address) {
+        invalidateAll(Collections.singleton(address));
+    }
+
+    /**
+     * Invalidates the cached routes for the given masked addresses, in the same way as {@link #invalidate(String)},
+     * but with a single pass over the cache.
+     *
+     * @param addresses The e-mail addresses for the masked addresses.
+     */
+    public void invalidateAll(Collection<String> addresses) {
+        Set<String> addressSet = new HashSet<>(addresses);
+        addressSet.forEach(addressFilterService::add);
+
+        invalidationCount.incrementAndGet();
+        routes.invalidateAll(addressSet);
+        routes.asMap().values().removeIf(route -> route.isPresent()
+                && addressSet.contains(route.get().getMaskedAddress()));
+    }
+
+    /**
+     * Invalidates the cached route for the given reply address, and adds it to the address filter. This must be called
+     * when a reply address is stored.
+     *
+     * @param address The generated reply address.
+     */
+    public void invalidateReplyAddress(String address) {
+        addressFilterService.add(address);
+
+        invalidationCount.incrementAndGet();
+        routes.invalidate(address);
+    }
+
+    /**
+     * Gets the statistics for the route cache.
+     *
+     * @return The cache statistics.
+     */
+    public CacheStats getRouteCacheStats() {
+        return routes.stats();
+    }
+
+    /**
+     * Looks up the route for a masked address or stored reply address, unless the address filter rejects it. The
+     * route is read from the cache, or found in the database and cached. If an invalidation happens while the database
+     * is being read, the route that was found is dropped from the cache again, since it may predate the change.
+     *
+     * @param address The recipient address.
+     * @return An optional, possibly containing the route.
+     */
+    private Optional<Route> lookup(String address) {
+
+        if (!addressFilterService.mightExist(address)) {
+            return Optional.empty();
+        }
+
+        Optional<Route> route = routes.getIfPresent(address);
+
+        if (route != null) {
+            return route;
+        }
+
+        long invalidations = invalidationCount.get();
+        route = findRoute(address);
+
+        routes.put(address, route);
+
+        if (invalidationCount.get() != invalidations) {
+            routes.invalidate(address);
+        }
+
+        return route;
+    }
+
+    /**
+     * Finds the route for a masked address or stored reply address in the database. If the address is somehow both,
+     * the reply address takes precedence.
+     *
+     * @param address The recipient address.
+     * @return An optional, possibly containing the route.
+     */
+    private Optional<Route> findRoute(String address) {
+        List<Object[]> rows = maskedAddressRepository.findRoutes(address);
+        Route route = null;
+
+        for (Object[] row : rows) {
+            Route.Kind kind = Route.Kind.valueOf(String.valueOf(row[0]).trim());
+
+            if (route == null || kind == Route.Kind.REPLY) {
+                route = new Route(kind, address, (String) row[1], (String) row[2], (String) row[3]);
+            }
+        }
+
+        return Optional.ofNullable(route);
+    }
+}
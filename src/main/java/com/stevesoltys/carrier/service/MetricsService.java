@@ -0,0 +1,134 @@
+package com.stevesoltys.carrier.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * Registers gauges for the state that the other services already keep track of, such as queue depths and cache
+ * statistics. Timings and event counts are recorded by the services themselves, where they happen.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class MetricsService {
+
+    /**
+     * The meter registry.
+     */
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * The mail delivery service.
+     */
+    private final MailDeliveryService deliveryService;
+
+    /**
+     * The delivery retry service.
+     */
+    private final DeliveryRetryService retryService;
+
+    /**
+     * The masked address service.
+     */
+    private final MaskedAddressService maskedAddressService;
+
+    /**
+     * The address filter service.
+     */
+    private final AddressFilterService addressFilterService;
+
+    /**
+     * The mail resolver service.
+     */
+    private final MailResolverService resolverService;
+
+    /**
+     * The reply address sweeper service.
+     */
+    private final ReplyAddressSweeperService sweeperService;
+
+    @Autowired
+    public MetricsService(MeterRegistry meterRegistry, MailDeliveryService deliveryService,
+                          DeliveryRetryService retryService, MaskedAddressService maskedAddressService,
+                          AddressFilterService addressFilterService,
+                          MailResolverService resolverService, ReplyAddressSweeperService sweeperService) {
+
+        this.meterRegistry = meterRegistry;
+        this.deliveryService = deliveryService;
+        this.retryService = retryService;
+        this.maskedAddressService = maskedAddressService;
+        this.addressFilterService = addressFilterService;
+        this.resolverService = resolverService;
+        this.sweeperService = sweeperService;
+    }
+
+    /**
+     * Registers the gauges.
+     */
+    @PostConstruct
+    public void start() {
+        Gauge.builder("carrier.delivery.queue.depth", deliveryService, MailDeliveryService::getQueueDepth)
+                .description("The number of messages waiting for a delivery worker")
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.delivery.deferred", retryService, DeliveryRetryService::getDeferredCount)
+                .description("The number of messages waiting for a delivery retry")
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.delivery.deferred.domains", retryService, DeliveryRetryService::getDeferredDomainCount)
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.route.cache.requests", maskedAddressService,
+                service -> service.getRouteCacheStats().hitCount())
+                .tag("result", "hit")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.route.cache.requests", maskedAddressService,
+                service -> service.getRouteCacheStats().missCount())
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.address.filter.rejected", addressFilterService,
+                AddressFilterService::getRejectedCount)
+                .description("The number of recipients rejected by the address filter")
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.address.filter.fpp", addressFilterService,
+                AddressFilterService::getExpectedFalsePositiveRate)
+                .description("The expected false positive rate of the address filter")
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.address.filter.size", addressFilterService, AddressFilterService::getSize)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.dns.cache.requests", resolverService, MailResolverService::getCacheHits)
+                .tag("result", "hit")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.dns.cache.requests", resolverService, MailResolverService::getCacheMisses)
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.dns.cache.size", resolverService, MailResolverService::getCacheSize)
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.reply.address.count", sweeperService, ReplyAddressSweeperService::getReplyAddressCount)
+                .description("The number of stored reply addresses, as counted after the last sweep")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("carrier.reply.address.deleted", sweeperService,
+                ReplyAddressSweeperService::getDeletedCount)
+                .register(meterRegistry);
+
+        Gauge.builder("carrier.reply.address.sweep.duration", sweeperService,
+                ReplyAddressSweeperService::getLastSweepDuration)
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,58 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.model.ReplyAddress;
+import com.stevesoltys.carrier.repository.LegacyReplyAddressRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/**
+ * Carries reply addresses over from the table they were stored in before they became {@link ReplyAddress} entities,
+ * so that replies to mail forwarded by an earlier version keep working. This runs once, before the SMTP server starts
+ * accepting mail; the legacy table is dropped afterwards.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class ReplyAddressMigrationService {
+
+    /**
+     * The logger.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplyAddressMigrationService.class);
+
+    /**
+     * The legacy reply address repository.
+     */
+    private final LegacyReplyAddressRepository legacyReplyAddressRepository;
+
+    /**
+     * The address filter service.
+     */
+    private final AddressFilterService addressFilterService;
+
+    @Autowired
+    public ReplyAddressMigrationService(LegacyReplyAddressRepository legacyReplyAddressRepository,
+                                        AddressFilterService addressFilterService) {
+
+        this.legacyReplyAddressRepository = legacyReplyAddressRepository;
+        this.addressFilterService = addressFilterService;
+    }
+
+    /**
+     * Carries the legacy reply addresses over, if the legacy table still exists. The address filter is rebuilt
+     * afterwards, since it may have been built before the reply addresses were carried over.
+     */
+    public void migrate() {
+
+        if (!legacyReplyAddressRepository.exists()) {
+            return;
+        }
+
+        int migrated = legacyReplyAddressRepository.migrate();
+        LOGGER.info("Carried over {} reply addresses from the legacy table.", migrated);
+
+        addressFilterService.rebuild();
+    }
+}
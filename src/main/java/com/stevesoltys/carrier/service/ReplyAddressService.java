@@ -0,0 +1,242 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.io.BaseEncoding;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.model.EncodedReplyAddress;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stateless reply address service. When a reply address key is configured, reply addresses encode the masked
+ * address, the original sender and an expiry date, authenticated with an HMAC. They can be decoded without a database
+ * lookup, and do not need to be stored when they are generated.
+ * <p>
+ * The local part of an encoded address is {@link #PREFIX} followed by the lower case base32 encoding of the expiry
+ * day, a truncated HMAC-SHA256, and the masked address and sender separated by a null byte. When the masked address
+ * is on the configured domain, spelled with the same case, only its local part is encoded. The local part stays
+ * within the 64 characters allowed by RFC 5321 as long as the encoded masked address and the sender add up to at most
+ * 27 bytes, as with "shopping" and "noreply@amazon.com". Longer addresses go over that limit, as SRS addresses do.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class ReplyAddressService {
+
+    /**
+     * The prefix of the local part of an encoded reply address.
+     */
+    private static final String PREFIX = "r-";
+
+    /**
+     * The MAC algorithm.
+     */
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    /**
+     * The number of bytes of the MAC that are kept. A forged address has to be checked against the server, one guess
+     * at a time, so 64 bits are plenty.
+     */
+    private static final int MAC_LENGTH = 8;
+
+    /**
+     * The number of bytes used for the expiry day.
+     */
+    private static final int EXPIRY_LENGTH = 2;
+
+    /**
+     * The separator between the masked address and the sender.
+     */
+    private static final byte SEPARATOR = 0;
+
+    /**
+     * The encoding used for the local part. Lower case base32 survives servers which change the case of addresses.
+     */
+    private static final BaseEncoding ENCODING = BaseEncoding.base32().lowerCase().omitPadding();
+
+    /**
+     * The client configuration.
+     */
+    private final SMTPClientConfiguration clientConfiguration;
+
+    /**
+     * The MAC instances, one per thread since they are not thread-safe.
+     */
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::createMac);
+
+    @Autowired
+    public ReplyAddressService(SMTPClientConfiguration clientConfiguration) {
+        this.clientConfiguration = clientConfiguration;
+    }
+
+    /**
+     * Checks whether stateless reply addresses are enabled.
+     *
+     * @return A flag indicating whether a reply address key is configured.
+     */
+    public boolean isEnabled() {
+        return clientConfiguration.getReplyAddressKey() != null;
+    }
+
+    /**
+     * Encodes a reply address for the given masked address and original sender.
+     *
+     * @param maskedAddress The masked address that the original e-mail was sent to.
+     * @param sender        The address of the original sender.
+     * @return The encoded reply address.
+     */
+    public String encode(String maskedAddress, String sender) {
+        String domain = clientConfiguration.getDomain();
+        String domainSuffix = "@" + domain;
+
+        if (maskedAddress.endsWith(domainSuffix)) {
+            maskedAddress = maskedAddress.substring(0, maskedAddress.length() - domainSuffix.length());
+        }
+
+        byte[] maskedAddressBytes = maskedAddress.getBytes(StandardCharsets.UTF_8);
+        byte[] senderBytes = sender.getBytes(StandardCharsets.UTF_8);
+
+        long today = TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis());
+        short expiry = (short) Math.min(today + clientConfiguration.getReplyAddressTtl(), 0xFFFF);
+
+        ByteBuffer content = ByteBuffer.allocate(EXPIRY_LENGTH + maskedAddressBytes.length + 1 + senderBytes.length);
+        content.putShort(expiry).put(maskedAddressBytes).put(SEPARATOR).put(senderBytes);
+
+        byte[] mac = mac(content.array());
+
+        ByteBuffer payload = ByteBuffer.allocate(content.capacity() + MAC_LENGTH);
+        payload.putShort(expiry).put(mac).put(content.array(), EXPIRY_LENGTH, content.capacity() - EXPIRY_LENGTH);
+
+        return PREFIX + ENCODING.encode(payload.array()) + "@" + domain;
+    }
+
+    /**
+     * Decodes the given reply address. The address is only decoded if it is on the configured domain, its MAC is
+     * valid, and it has not expired.
+     *
+     * @param address The reply address.
+     * @return An optional, possibly containing the decoded reply address.
+     */
+    public Optional<EncodedReplyAddress> decode(String address) {
+
+        if (!isEnabled()) {
+            return Optional.empty();
+        }
+
+        int separatorIndex = address.lastIndexOf('@');
+
+        if (separatorIndex == -1) {
+            return Optional.empty();
+        }
+
+        String localPart = address.substring(0, separatorIndex).toLowerCase(Locale.ROOT);
+        String domain = address.substring(separatorIndex + 1);
+
+        if (!localPart.startsWith(PREFIX) || !domain.equalsIgnoreCase(clientConfiguration.getDomain())) {
+            return Optional.empty();
+        }
+
+        byte[] payload;
+
+        try {
+            payload = ENCODING.decode(localPart.substring(PREFIX.length()));
+
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+
+        if (payload.length < EXPIRY_LENGTH + MAC_LENGTH + 1) {
+            return Optional.empty();
+        }
+
+        byte[] content = new byte[payload.length - MAC_LENGTH];
+        System.arraycopy(payload, 0, content, 0, EXPIRY_LENGTH);
+        System.arraycopy(payload, EXPIRY_LENGTH + MAC_LENGTH, content, EXPIRY_LENGTH, content.length - EXPIRY_LENGTH);
+
+        byte[] mac = Arrays.copyOfRange(payload, EXPIRY_LENGTH, EXPIRY_LENGTH + MAC_LENGTH);
+
+        if (!MessageDigest.isEqual(mac, mac(content))) {
+            return Optional.empty();
+        }
+
+        long expiry = ByteBuffer.wrap(content).getShort() & 0xFFFF;
+
+        if (expiry < TimeUnit.MILLISECONDS.toDays(System.currentTimeMillis())) {
+            return Optional.empty();
+        }
+
+        return decodeContent(content);
+    }
+
+    /**
+     * Decodes the masked address and sender from the authenticated content of a reply address.
+     *
+     * @param content The content, starting with the expiry day.
+     * @return An optional, possibly containing the decoded reply address.
+     */
+    private Optional<EncodedReplyAddress> decodeContent(byte[] content) {
+        int separatorIndex = -1;
+
+        for (int i = EXPIRY_LENGTH; i < content.length; i++) {
+
+            if (content[i] == SEPARATOR) {
+                separatorIndex = i;
+                break;
+            }
+        }
+
+        if (separatorIndex == -1) {
+            return Optional.empty();
+        }
+
+        String maskedAddress = new String(content, EXPIRY_LENGTH, separatorIndex - EXPIRY_LENGTH,
+                StandardCharsets.UTF_8);
+        String sender = new String(content, separatorIndex + 1, content.length - separatorIndex - 1,
+                StandardCharsets.UTF_8);
+
+        if (maskedAddress.indexOf('@') == -1) {
+            maskedAddress = maskedAddress + "@" + clientConfiguration.getDomain();
+        }
+
+        return Optional.of(new EncodedReplyAddress(maskedAddress, sender));
+    }
+
+    /**
+     * Computes the truncated MAC of the given content.
+     *
+     * @param content The content.
+     * @return The truncated MAC.
+     */
+    private byte[] mac(byte[] content) {
+        return Arrays.copyOf(macs.get().doFinal(content), MAC_LENGTH);
+    }
+
+    /**
+     * Creates a MAC instance using the configured reply address key.
+     *
+     * @return The MAC instance.
+     */
+    private Mac createMac() {
+
+        try {
+            Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            byte[] key = clientConfiguration.getReplyAddressKey().getBytes(StandardCharsets.UTF_8);
+
+            mac.init(new SecretKeySpec(key, MAC_ALGORITHM));
+            return mac;
+
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not initialize the reply address MAC.", e);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.stevesoltys.carrier.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.model.ReplyAddress;
+import com.stevesoltys.carrier.repository.ReplyAddressRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Periodically deletes stored {@link ReplyAddress} entries which have not been used for longer than the configured
+ * reply address lifetime, so that the table and its indexes only grow with active conversations. Expired reply
+ * addresses are deleted in bounded batches, each in its own transaction, so that a sweep never holds locks on a large
+ * part of the table. Reply addresses stored before their last used time was recorded are treated as last used when
+ * they were generated.
+ *
+ * @author Steve Soltys
+ */
+@Service
+public class ReplyAddressSweeperService {
+
+    /**
+     * The interval at which expired reply addresses are swept, in minutes.
+     */
+    private static final long SWEEP_INTERVAL = 60;
+
+    /**
+     * The maximum number of reply addresses deleted in a single batch.
+     */
+    private static final int SWEEP_BATCH_SIZE = 1000;
+
+    /**
+     * The reply address repository.
+     */
+    private final ReplyAddressRepository replyAddressRepository;
+
+    /**
+     * The client configuration.
+     */
+    private final SMTPClientConfiguration clientConfiguration;
+
+    /**
+     * The total number of reply addresses deleted by sweeps.
+     */
+    private final AtomicLong deletedCount = new AtomicLong();
+
+    /**
+     * The number of stored reply addresses after the last sweep, or -1 if there has not been a sweep yet.
+     */
+    private volatile long replyAddressCount = -1;
+
+    /**
+     * The duration of the last sweep, in milliseconds.
+     */
+    private volatile long lastSweepDuration;
+
+    /**
+     * The executor used for sweeping expired reply addresses.
+     */
+    private ScheduledExecutorService sweepExecutor;
+
+    @Autowired
+    public ReplyAddressSweeperService(ReplyAddressRepository replyAddressRepository,
+                                      SMTPClientConfiguration clientConfiguration) {
+
+        this.replyAddressRepository = replyAddressRepository;
+        this.clientConfiguration = clientConfiguration;
+    }
+
+    /**
+     * Starts sweeping expired reply addresses periodically.
+     */
+    @PostConstruct
+    public void start() {
+        sweepExecutor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("carrier-reply-address-sweeper").setDaemon(true).build());
+
+        sweepExecutor.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL, SWEEP_INTERVAL, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stops sweeping expired reply addresses.
+     */
+    @PreDestroy
+    public void stop() {
+        sweepExecutor.shutdownNow();
+    }
+
+    /**
+     * Deletes every reply address which has not been used for longer than the reply address lifetime, one batch at a
+     * time. Any reply address without a last used time is given one first, so that it can expire.
+     */
+    public synchronized void sweep() {
+        long startTime = System.nanoTime();
+
+        try {
+            int updated;
+
+            do {
+                updated = replyAddressRepository.backfillLastUsed(SWEEP_BATCH_SIZE);
+
+            } while (updated == SWEEP_BATCH_SIZE && !Thread.currentThread().isInterrupted());
+
+            Date expiry = new Date(System.currentTimeMillis()
+                    - TimeUnit.DAYS.toMillis(clientConfiguration.getReplyAddressTtl()));
+
+            int deleted;
+
+            do {
+                deleted = replyAddressRepository.deleteExpired(expiry, SWEEP_BATCH_SIZE);
+                deletedCount.addAndGet(deleted);
+
+            } while (deleted == SWEEP_BATCH_SIZE && !Thread.currentThread().isInterrupted());
+
+            replyAddressCount = replyAddressRepository.count();
+
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+
+        } finally {
+            lastSweepDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Gets the number of stored reply addresses, as counted after the last sweep.
+     *
+     * @return The number of reply addresses, or -1 if there has not been a sweep yet.
+     */
+    public long getReplyAddressCount() {
+        return replyAddressCount;
+    }
+
+    /**
+     * Gets the total number of reply addresses deleted by sweeps.
+     *
+     * @return The number of deleted reply addresses.
+     */
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+
+    /**
+     * Gets the duration of the last sweep.
+     *
+     * @return The sweep duration, in milliseconds.
+     */
+    public long getLastSweepDuration() {
+        return lastSweepDuration;
+    }
+}
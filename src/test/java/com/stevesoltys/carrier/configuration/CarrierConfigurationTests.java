@@ -55,6 +55,8 @@ public class CarrierConfigurationTests {
         Map<String, Object> server = new HashMap<>();
         server.put("localhost", "server.mydomain.com");
         server.put("force_tls", true);
+        server.put("max_connections", 500.0);
+        server.put("virtual_threads", false);
 
         configuration.put("server", server);
 
@@ -67,9 +69,52 @@ public class CarrierConfigurationTests {
         client.put("domain", "mydomain.com");
         client.put("keystore", "/some/path");
         client.put("keystore_password", "1234567");
+        client.put("raw_forwarding", true);
+        client.put("reply_address_key", "0123456789abcdef0123456789abcdef");
+        client.put("reply_address_ttl", 30.0);
 
         configuration.put("client", client);
 
+        // Delivery configuration
+        Map<String, Object> delivery = new HashMap<>();
+        delivery.put("threads", 4.0);
+        delivery.put("queue_capacity", 100.0);
+        delivery.put("connections_per_host", 2.0);
+        delivery.put("idle_timeout", 30.0);
+        delivery.put("connect_timeout", 5.0);
+        delivery.put("timeout", 30.0);
+        delivery.put("reply_address_batch_size", 50.0);
+        delivery.put("reply_address_batch_delay", 5.0);
+        delivery.put("retry_delay", 30.0);
+        delivery.put("retry_max_delay", 1800.0);
+        delivery.put("max_age", 48.0);
+        delivery.put("virtual_threads", false);
+
+        configuration.put("delivery", delivery);
+
+        // Spool configuration
+        Map<String, Object> spool = new HashMap<>();
+        spool.put("directory", "/some/path");
+        spool.put("segment_size", 1048576.0);
+
+        configuration.put("spool", spool);
+
+        // Limits configuration
+        Map<String, Object> limits = new HashMap<>();
+        limits.put("domain_rate", 10.0);
+        limits.put("domain_connections", 8.0);
+        limits.put("host_rate", 5.0);
+        limits.put("host_connections", 2.0);
+
+        Map<String, Object> domainLimit = new HashMap<>();
+        domainLimit.put("rate", 2.5);
+        domainLimit.put("connections", 4.0);
+
+        limits.put("domains", Collections.singletonMap("gmail.com", domainLimit));
+        limits.put("hosts", Collections.singletonMap("gmail-smtp-in.l.google.com", domainLimit));
+
+        configuration.put("limits", limits);
+
         // Account instances
         Map<String, Object> account = new HashMap<>();
         account.put("username", "username");
@@ -28,6 +28,21 @@ public class CarrierConfigurationTestsContext {
         return new SMTPClientConfiguration();
     }
 
+    @Bean
+    public DeliveryConfiguration deliveryConfiguration() {
+        return new DeliveryConfiguration();
+    }
+
+    @Bean
+    public SpoolConfiguration spoolConfiguration() {
+        return new SpoolConfiguration();
+    }
+
+    @Bean
+    public LimitsConfiguration limitsConfiguration() {
+        return new LimitsConfiguration();
+    }
+
     @Bean
     public AccountConfiguration accountConfiguration() {
         return new AccountConfiguration(accountRepository());
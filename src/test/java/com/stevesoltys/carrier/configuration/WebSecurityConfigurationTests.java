@@ -0,0 +1,96 @@
+package com.stevesoltys.carrier.configuration;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import javax.servlet.Filter;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Tests for the {@link WebSecurityConfiguration}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = WebSecurityConfigurationTestsContext.class)
+public class WebSecurityConfigurationTests {
+
+    /**
+     * The web application context.
+     */
+    @Autowired
+    private WebApplicationContext context;
+
+    /**
+     * The Spring Security filter chain.
+     */
+    @Autowired
+    private Filter springSecurityFilterChain;
+
+    /**
+     * The mocked MVC environment, with the security filter chain in front of it.
+     */
+    private MockMvc mockMvc;
+
+    /**
+     * Initializes this test.
+     */
+    @Before
+    public void initialize() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).addFilters(springSecurityFilterChain).build();
+    }
+
+    /**
+     * Tests that an authenticated bulk request is accepted without a CSRF token.
+     */
+    @Test
+    public void testBulkRequestWithoutCsrfToken() throws Exception {
+        mockMvc.perform(post("/bulk/create").header(HttpHeaders.AUTHORIZATION, basicAuthorization())
+                .contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Tests that an authenticated request outside of the bulk endpoints is still rejected without a CSRF token.
+     */
+    @Test
+    public void testRequestWithoutCsrfToken() throws Exception {
+        mockMvc.perform(post("/create").header(HttpHeaders.AUTHORIZATION, basicAuthorization())
+                .param("address", "shopping@mydomain.com").param("destination", "alice@example.org"))
+                .andExpect(status().isForbidden());
+    }
+
+    /**
+     * Tests that a bulk request still requires authentication.
+     */
+    @Test
+    public void testBulkRequestWithoutAuthentication() throws Exception {
+        mockMvc.perform(post("/bulk/create").contentType(MediaType.APPLICATION_JSON).content("[]"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * Creates the authorization header for the mocked account.
+     *
+     * @return The header value.
+     */
+    private static String basicAuthorization() {
+        String credentials = WebSecurityConfigurationTestsContext.USERNAME + ":"
+                + WebSecurityConfigurationTestsContext.PASSWORD;
+
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+}
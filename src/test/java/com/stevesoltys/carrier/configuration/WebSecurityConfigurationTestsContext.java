@@ -0,0 +1,64 @@
+package com.stevesoltys.carrier.configuration;
+
+import com.stevesoltys.carrier.controller.CarrierRestController;
+import com.stevesoltys.carrier.model.Account;
+import com.stevesoltys.carrier.repository.AccountRepository;
+import com.stevesoltys.carrier.repository.MaskedAddressBatchRepository;
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import com.stevesoltys.carrier.service.MaskedAddressService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.Optional;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link WebSecurityConfigurationTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+@EnableWebMvc
+@Import(WebSecurityConfiguration.class)
+public class WebSecurityConfigurationTestsContext {
+
+    /**
+     * The username of the mocked account.
+     */
+    static final String USERNAME = "username";
+
+    /**
+     * The password of the mocked account.
+     */
+    static final String PASSWORD = "password";
+
+    @Bean
+    public AccountRepository accountRepository() {
+        AccountRepository accountRepository = mock(AccountRepository.class);
+        Account account = new Account(USERNAME, new BCryptPasswordEncoder().encode(PASSWORD));
+
+        when(accountRepository.findByUsername(USERNAME)).thenReturn(Optional.of(account));
+
+        return accountRepository;
+    }
+
+    @Bean
+    public MaskedAddressRepository maskedAddressRepository() {
+        MaskedAddressRepository maskedAddressRepository = mock(MaskedAddressRepository.class);
+
+        when(maskedAddressRepository.findByAddress("shopping@mydomain.com")).thenReturn(Optional.empty());
+
+        return maskedAddressRepository;
+    }
+
+    @Bean
+    public CarrierRestController carrierRestController(MaskedAddressRepository maskedAddressRepository) {
+        return new CarrierRestController(maskedAddressRepository, mock(MaskedAddressBatchRepository.class),
+                mock(MaskedAddressService.class));
+    }
+}
@@ -0,0 +1,281 @@
+package com.stevesoltys.carrier.controller;
+
+import com.stevesoltys.carrier.exception.CarrierInvalidRequestException;
+import com.stevesoltys.carrier.model.MaskedAddress;
+import com.stevesoltys.carrier.repository.MaskedAddressBatchRepository;
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import com.stevesoltys.carrier.service.MaskedAddressService;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the bulk and listing endpoints of the {@link CarrierRestController}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = CarrierRestControllerTestsContext.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class CarrierRestControllerTests {
+
+    /**
+     * The number of masked addresses in a batch, as used by the controller.
+     */
+    private static final int BATCH_SIZE = 1000;
+
+    /**
+     * The number of masked addresses in a page, as used by the controller.
+     */
+    private static final int PAGE_SIZE = 1000;
+
+    /**
+     * The masked address repository.
+     */
+    @Autowired
+    private MaskedAddressRepository maskedAddressRepository;
+
+    /**
+     * The masked address batch repository.
+     */
+    @Autowired
+    private MaskedAddressBatchRepository maskedAddressBatchRepository;
+
+    /**
+     * The masked address service.
+     */
+    @Autowired
+    private MaskedAddressService maskedAddressService;
+
+    /**
+     * The REST controller.
+     */
+    @Autowired
+    private CarrierRestController carrierRestController;
+
+    /**
+     * Tests that a bulk create invalidates the cached lookups of each batch once it has been written, before the next
+     * batch is written.
+     */
+    @Test
+    public void testCreateAllInvalidatesEachBatch() throws IOException {
+        when(maskedAddressBatchRepository.createAll(anyListOf(MaskedAddress.class)))
+                .thenAnswer(invocation -> ((List<?>) invocation.getArguments()[0]).size());
+
+        List<String> items = IntStream.range(0, BATCH_SIZE + 1)
+                .mapToObj(index -> maskedAddressJson("user" + index + "@mydomain.com"))
+                .collect(Collectors.toList());
+
+        Map<String, Integer> response = carrierRestController.createAll(request(String.join("\n", items)));
+
+        assertEquals(BATCH_SIZE + 1, (int) response.get("requested"));
+        assertEquals(BATCH_SIZE + 1, (int) response.get("created"));
+
+        InOrder order = inOrder(maskedAddressBatchRepository, maskedAddressService);
+        order.verify(maskedAddressBatchRepository).createAll(anyListOf(MaskedAddress.class));
+        order.verify(maskedAddressService).invalidateAll(addressesBetween(0, BATCH_SIZE));
+        order.verify(maskedAddressBatchRepository).createAll(anyListOf(MaskedAddress.class));
+        order.verify(maskedAddressService).invalidateAll(addressesBetween(BATCH_SIZE, BATCH_SIZE + 1));
+    }
+
+    /**
+     * Tests that a masked address given twice in a bulk create is requested twice, but only counted as created as
+     * often as the repository created it.
+     */
+    @Test
+    public void testCreateAllDuplicates() throws IOException {
+        when(maskedAddressBatchRepository.createAll(anyListOf(MaskedAddress.class))).thenReturn(1);
+
+        String item = maskedAddressJson("shopping@mydomain.com");
+        Map<String, Integer> response = carrierRestController.createAll(request("[" + item + ", " + item + "]"));
+
+        assertEquals(2, (int) response.get("requested"));
+        assertEquals(1, (int) response.get("created"));
+
+        verify(maskedAddressService).invalidateAll(Arrays.asList("shopping@mydomain.com", "shopping@mydomain.com"));
+    }
+
+    /**
+     * Tests that a bulk create which is malformed part-way through keeps the batches written before the malformed
+     * item, and does not write the rest of the stream.
+     */
+    @Test
+    public void testCreateAllMalformedPartWay() throws IOException {
+        List<String> items = IntStream.range(0, BATCH_SIZE)
+                .mapToObj(index -> maskedAddressJson("user" + index + "@mydomain.com"))
+                .collect(Collectors.toList());
+
+        items.add("{\"address\": ");
+        items.add(maskedAddressJson("late@mydomain.com"));
+
+        try {
+            carrierRestController.createAll(request(String.join("\n", items)));
+            fail();
+
+        } catch (CarrierInvalidRequestException ex) {
+            assertEquals("Invalid request: malformed JSON at item " + (BATCH_SIZE + 1), ex.getMessage());
+        }
+
+        verify(maskedAddressBatchRepository, times(1)).createAll(anyListOf(MaskedAddress.class));
+        verify(maskedAddressService, times(1)).invalidateAll(addressesBetween(0, BATCH_SIZE));
+    }
+
+    /**
+     * Tests that a bulk delete accepts addresses given as strings or as objects, and invalidates the deleted
+     * addresses.
+     */
+    @Test
+    public void testDeleteAll() throws IOException {
+        List<String> addresses = Arrays.asList("shopping@mydomain.com", "news@mydomain.com");
+
+        when(maskedAddressBatchRepository.deleteAll(addresses)).thenReturn(1);
+
+        Map<String, Integer> response = carrierRestController.deleteAll(
+                request("[\"shopping@mydomain.com\", {\"address\": \"news@mydomain.com\"}]"));
+
+        assertEquals(2, (int) response.get("requested"));
+        assertEquals(1, (int) response.get("deleted"));
+
+        verify(maskedAddressService).invalidateAll(addresses);
+    }
+
+    /**
+     * Tests that a listing continues from the last address of each full page, and stops at the first page which is
+     * not full.
+     */
+    @Test
+    public void testListAcrossPages() throws IOException {
+        List<MaskedAddress> firstPage = maskedAddresses(0, PAGE_SIZE);
+        List<MaskedAddress> secondPage = maskedAddresses(PAGE_SIZE, PAGE_SIZE + 2);
+        String lastAddress = firstPage.get(PAGE_SIZE - 1).getAddress();
+
+        when(maskedAddressRepository.findByAddressGreaterThanOrderByAddress(eq(""), any(Pageable.class)))
+                .thenReturn(firstPage);
+        when(maskedAddressRepository.findByAddressGreaterThanOrderByAddress(eq(lastAddress), any(Pageable.class)))
+                .thenReturn(secondPage);
+
+        List<String> lines = list("", 0);
+
+        assertEquals(PAGE_SIZE + 2, lines.size());
+        assertEquals(maskedAddressJson(secondPage.get(1).getAddress()), lines.get(PAGE_SIZE + 1));
+
+        verify(maskedAddressRepository).findByAddressGreaterThanOrderByAddress("", new PageRequest(0, PAGE_SIZE));
+        verify(maskedAddressRepository).findByAddressGreaterThanOrderByAddress(lastAddress,
+                new PageRequest(0, PAGE_SIZE));
+    }
+
+    /**
+     * Tests that a listing with a limit starts after the given address, and requests no more than the limit.
+     */
+    @Test
+    public void testListWithLimit() throws IOException {
+        String after = "a@mydomain.com";
+
+        when(maskedAddressRepository.findByAddressGreaterThanOrderByAddress(eq(after), any(Pageable.class)))
+                .thenReturn(maskedAddresses(0, 2));
+
+        List<String> lines = list(after, 2);
+
+        assertEquals(2, lines.size());
+        verify(maskedAddressRepository, times(1)).findByAddressGreaterThanOrderByAddress(anyString(),
+                any(Pageable.class));
+        verify(maskedAddressRepository).findByAddressGreaterThanOrderByAddress(after, new PageRequest(0, 2));
+    }
+
+    /**
+     * Lists masked addresses through the controller.
+     *
+     * @param after The address after which the listing starts.
+     * @param limit The maximum number of masked addresses to list.
+     * @return The lines of the response.
+     */
+    private List<String> list(String after, int limit) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        carrierRestController.list(after, limit).getBody().writeTo(outputStream);
+
+        String body = new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+
+        return body.isEmpty() ? Collections.emptyList() : Arrays.asList(body.split("\n"));
+    }
+
+    /**
+     * Creates a request with the given body.
+     *
+     * @param body The request body.
+     * @return The request.
+     */
+    private static MockHttpServletRequest request(String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+
+        return request;
+    }
+
+    /**
+     * Creates masked addresses with sequential addresses.
+     *
+     * @param start The index of the first masked address, inclusive.
+     * @param end   The index of the last masked address, exclusive.
+     * @return The masked addresses.
+     */
+    private static List<MaskedAddress> maskedAddresses(int start, int end) {
+        List<MaskedAddress> maskedAddresses = new ArrayList<>();
+
+        for (int index = start; index < end; index++) {
+            maskedAddresses.add(new MaskedAddress(String.format("user%05d@mydomain.com", index), "alice@example.org"));
+        }
+
+        return maskedAddresses;
+    }
+
+    /**
+     * Gets the addresses created by {@link #testCreateAllInvalidatesEachBatch()} for the given range.
+     *
+     * @param start The index of the first address, inclusive.
+     * @param end   The index of the last address, exclusive.
+     * @return The addresses.
+     */
+    private static List<String> addressesBetween(int start, int end) {
+        return IntStream.range(start, end).mapToObj(index -> "user" + index + "@mydomain.com")
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Creates the JSON for a masked address forwarding to 'alice@example.org'.
+     *
+     * @param address The e-mail address for the masked address.
+     * @return The JSON object.
+     */
+    private static String maskedAddressJson(String address) {
+        return "{\"address\":\"" + address + "\",\"destination\":\"alice@example.org\"}";
+    }
+}
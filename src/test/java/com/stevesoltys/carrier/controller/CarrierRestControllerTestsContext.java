@@ -0,0 +1,41 @@
+package com.stevesoltys.carrier.controller;
+
+import com.stevesoltys.carrier.repository.MaskedAddressBatchRepository;
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import com.stevesoltys.carrier.service.MaskedAddressService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * The context configuration for the {@link CarrierRestControllerTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class CarrierRestControllerTestsContext {
+
+    @Bean
+    public MaskedAddressRepository maskedAddressRepository() {
+        return mock(MaskedAddressRepository.class);
+    }
+
+    @Bean
+    public MaskedAddressBatchRepository maskedAddressBatchRepository() {
+        return mock(MaskedAddressBatchRepository.class);
+    }
+
+    @Bean
+    public MaskedAddressService maskedAddressService() {
+        return mock(MaskedAddressService.class);
+    }
+
+    @Bean
+    public CarrierRestController carrierRestController(MaskedAddressRepository maskedAddressRepository,
+                                                       MaskedAddressBatchRepository maskedAddressBatchRepository,
+                                                       MaskedAddressService maskedAddressService) {
+
+        return new CarrierRestController(maskedAddressRepository, maskedAddressBatchRepository, maskedAddressService);
+    }
+}
@@ -0,0 +1,151 @@
+package com.stevesoltys.carrier.controller;
+
+import com.google.gson.JsonElement;
+import com.stevesoltys.carrier.exception.CarrierInvalidRequestException;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link JsonBatchReader}.
+ *
+ * @author Steve Soltys
+ */
+public class JsonBatchReaderTests {
+
+    /**
+     * Tests that the items of a JSON array are read in batches.
+     */
+    @Test
+    public void testReadArray() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        assertEquals(5, read(new JsonBatchReader(2), "[1, 2, 3, 4, 5]", batches));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3, 4), Arrays.asList(5)), batches);
+    }
+
+    /**
+     * Tests that the items of newline delimited JSON are read in batches.
+     */
+    @Test
+    public void testReadNewlineDelimited() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        assertEquals(3, read(new JsonBatchReader(2), "1\n2\n3\n", batches));
+        assertEquals(Arrays.asList(Arrays.asList(1, 2), Arrays.asList(3)), batches);
+    }
+
+    /**
+     * Tests that content after a JSON array fails, rather than being ignored, so that newline delimited JSON whose
+     * first item is an array is not mistaken for a JSON array.
+     */
+    @Test
+    public void testReadContentAfterArray() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        try {
+            read(new JsonBatchReader(10), "[1]\n[2]", batches);
+            fail();
+
+        } catch (CarrierInvalidRequestException ex) {
+            assertEquals("Invalid request: malformed JSON at item 2", ex.getMessage());
+        }
+
+        assertEquals(0, batches.size());
+    }
+
+    /**
+     * Tests that an empty array results in no batches.
+     */
+    @Test
+    public void testReadEmptyArray() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        assertEquals(0, read(new JsonBatchReader(2), "[]", batches));
+        assertEquals(0, batches.size());
+    }
+
+    /**
+     * Tests that duplicate items within a batch are passed to the handler as they are, and counted as read.
+     */
+    @Test
+    public void testReadDuplicates() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+        JsonBatchReader reader = new JsonBatchReader(3);
+
+        read(reader, "[7, 7, 7]", batches);
+
+        assertEquals(Arrays.asList(Arrays.asList(7, 7, 7)), batches);
+        assertEquals(3, reader.getItemCount());
+    }
+
+    /**
+     * Tests that malformed JSON part-way through a body fails with the number of the malformed item, after the
+     * batches before it have been handled, and without handling the items after it.
+     */
+    @Test
+    public void testReadMalformedPartWay() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        try {
+            read(new JsonBatchReader(2), "[1, 2, 3, }, 5]", batches);
+            fail();
+
+        } catch (CarrierInvalidRequestException ex) {
+            assertEquals("Invalid request: malformed JSON at item 4", ex.getMessage());
+        }
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+    }
+
+    /**
+     * Tests that a JSON array which is cut off fails, without handling the incomplete last batch.
+     */
+    @Test
+    public void testReadTruncated() throws IOException {
+        List<List<Integer>> batches = new ArrayList<>();
+
+        try {
+            read(new JsonBatchReader(2), "[1, 2, 3", batches);
+            fail();
+
+        } catch (CarrierInvalidRequestException ex) {
+            assertEquals("Invalid request: malformed JSON at item 4", ex.getMessage());
+        }
+
+        assertEquals(Arrays.asList(Arrays.asList(1, 2)), batches);
+    }
+
+    /**
+     * Reads integer items, and collects their batches.
+     *
+     * @param reader  The batch reader.
+     * @param body    The body.
+     * @param batches The list to which each batch is added.
+     * @return The number of affected items.
+     */
+    private static int read(JsonBatchReader reader, String body, List<List<Integer>> batches) throws IOException {
+        return reader.read(stream(body), JsonElement::getAsInt, batch -> {
+            batches.add(new ArrayList<>(batch));
+            return batch.size();
+        });
+    }
+
+    /**
+     * Creates a stream for the given body.
+     *
+     * @param body The body.
+     * @return The stream.
+     */
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,157 @@
+package com.stevesoltys.carrier.repository;
+
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link MessageSpoolRepository}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = MessageSpoolRepositoryTestsContext.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class MessageSpoolRepositoryTests {
+
+    /**
+     * The segment size used for these tests.
+     */
+    private static final int SEGMENT_SIZE = 1024;
+
+    /**
+     * The mocked message data.
+     */
+    private static final byte[] MOCKED_DATA = "Subject: test\r\n\r\nHello world\r\n".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * The temporary spool directory.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The message spool repository.
+     */
+    @Autowired
+    private MessageSpoolRepository spoolRepository;
+
+    /**
+     * The spool directory.
+     */
+    private File directory;
+
+    /**
+     * Initializes this test.
+     */
+    @Before
+    public void initialize() throws IOException {
+        directory = temporaryFolder.newFolder("spool");
+
+        assertTrue(spoolRepository.open(directory, SEGMENT_SIZE).isEmpty());
+    }
+
+    /**
+     * Closes the spool after each test.
+     */
+    @After
+    public void close() throws IOException {
+        spoolRepository.close();
+    }
+
+    /**
+     * Tests {@link MessageSpoolRepository#append(String, List, ByteSource)}.
+     */
+    @Test
+    public void testAppend() throws IOException {
+        SpooledMessage message = spoolRepository.append("from@example.com",
+                Collections.singletonList("to@example.com"), ByteSource.wrap(MOCKED_DATA));
+
+        assertEquals("from@example.com", message.getFrom());
+        assertEquals(Collections.singletonList("to@example.com"), message.getRecipients());
+        assertArrayEquals(MOCKED_DATA, read(message));
+    }
+
+    /**
+     * Tests that messages which were not completed are recovered when the spool is opened again.
+     */
+    @Test
+    public void testRecover() throws IOException {
+        List<String> recipients = Arrays.asList("first@example.com", "second@example.com");
+
+        SpooledMessage completed = spoolRepository.append("from@example.com", recipients,
+                ByteSource.wrap(MOCKED_DATA));
+        SpooledMessage pending = spoolRepository.append("from@example.com", recipients,
+                ByteSource.wrap(MOCKED_DATA));
+
+        spoolRepository.complete(completed.getId());
+        spoolRepository.close();
+
+        List<SpooledMessage> recovered = spoolRepository.open(directory, SEGMENT_SIZE);
+
+        assertEquals(1, recovered.size());
+        assertEquals(pending.getId(), recovered.get(0).getId());
+        assertEquals(recipients, recovered.get(0).getRecipients());
+        assertArrayEquals(MOCKED_DATA, read(recovered.get(0)));
+    }
+
+    /**
+     * Tests that messages larger than a segment are spooled, and that completed segments are deleted.
+     */
+    @Test
+    public void testSegmentRotation() throws IOException {
+        byte[] largeData = new byte[SEGMENT_SIZE * 3];
+        Arrays.fill(largeData, (byte) 'a');
+
+        SpooledMessage first = spoolRepository.append("from@example.com",
+                Collections.singletonList("to@example.com"), ByteSource.wrap(largeData));
+        SpooledMessage second = spoolRepository.append("from@example.com",
+                Collections.singletonList("to@example.com"), ByteSource.wrap(largeData));
+
+        assertArrayEquals(largeData, read(first));
+        assertArrayEquals(largeData, read(second));
+
+        spoolRepository.complete(first.getId());
+        spoolRepository.close();
+
+        List<SpooledMessage> recovered = spoolRepository.open(directory, SEGMENT_SIZE);
+
+        assertEquals(1, recovered.size());
+        assertArrayEquals(largeData, read(recovered.get(0)));
+    }
+
+    /**
+     * Reads the data of a spooled message.
+     *
+     * @param message The spooled message.
+     * @return The message data.
+     */
+    private static byte[] read(SpooledMessage message) throws IOException {
+
+        try (InputStream inputStream = message.openStream()) {
+            return ByteStreams.toByteArray(inputStream);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.stevesoltys.carrier.repository;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The context configuration for the {@link MessageSpoolRepositoryTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class MessageSpoolRepositoryTestsContext {
+
+    @Bean
+    public MessageSpoolRepository messageSpoolRepository() {
+        return new MessageSpoolRepository();
+    }
+}
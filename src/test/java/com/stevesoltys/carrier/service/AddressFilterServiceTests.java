@@ -0,0 +1,63 @@
+package com.stevesoltys.carrier.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link AddressFilterService}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = AddressFilterServiceTestsContext.class)
+public class AddressFilterServiceTests {
+
+    /**
+     * The address filter service.
+     */
+    @Autowired
+    private AddressFilterService addressFilterService;
+
+    /**
+     * Builds the filter before each test.
+     */
+    @Before
+    public void setUp() {
+        addressFilterService.rebuild();
+    }
+
+    /**
+     * Tests that every stored masked address and reply address passes the filter, and that an unknown address is
+     * rejected.
+     */
+    @Test
+    public void testMightExist() {
+        assertTrue(addressFilterService.mightExist("shopping@mydomain.com"));
+        assertTrue(addressFilterService.mightExist("news@mydomain.com"));
+        assertTrue(addressFilterService.mightExist("reply@mydomain.com"));
+
+        assertFalse(addressFilterService.mightExist("unknown@mydomain.com"));
+        assertTrue(addressFilterService.getRejectedCount() > 0);
+    }
+
+    /**
+     * Tests that an added address passes the filter, and that the filter's metrics are available.
+     */
+    @Test
+    public void testAdd() {
+        assertFalse(addressFilterService.mightExist("created@mydomain.com"));
+
+        addressFilterService.add("created@mydomain.com");
+
+        assertTrue(addressFilterService.mightExist("created@mydomain.com"));
+        assertTrue(addressFilterService.getExpectedFalsePositiveRate() < 0.01);
+        assertTrue(addressFilterService.getSize() > 0);
+    }
+}
@@ -0,0 +1,40 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.repository.AddressScanRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link AddressFilterServiceTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class AddressFilterServiceTestsContext {
+
+    @Bean
+    @SuppressWarnings("unchecked")
+    public AddressFilterService addressFilterService() {
+        AddressScanRepository addressScanRepository = mock(AddressScanRepository.class);
+        List<String> addresses = Arrays.asList("shopping@mydomain.com", "news@mydomain.com", "reply@mydomain.com");
+
+        when(addressScanRepository.countAddresses()).thenReturn((long) addresses.size());
+
+        doAnswer(invocation -> {
+            addresses.forEach((Consumer<String>) invocation.getArguments()[0]);
+            return null;
+
+        }).when(addressScanRepository).forEachAddress(any());
+
+        return new AddressFilterService(addressScanRepository);
+    }
+}
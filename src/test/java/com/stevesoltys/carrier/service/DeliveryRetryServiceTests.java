@@ -0,0 +1,117 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.model.DeferredDelivery;
+import com.stevesoltys.carrier.model.SpooledMessage;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link DeliveryRetryService}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = DeliveryRetryServiceTestsContext.class)
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+public class DeliveryRetryServiceTests {
+
+    /**
+     * The delivery retry service.
+     */
+    @Autowired
+    private DeliveryRetryService retryService;
+
+    /**
+     * Stops the retry service after each test.
+     */
+    @After
+    public void tearDown() {
+        retryService.stop();
+    }
+
+    /**
+     * Tests that the retry delay doubles with each failed attempt, up to the maximum retry delay.
+     */
+    @Test
+    public void testRetryDelay() {
+        assertInRange(retryService.getRetryDelay(1), TimeUnit.SECONDS.toMillis(1));
+        assertInRange(retryService.getRetryDelay(3), TimeUnit.SECONDS.toMillis(4));
+        assertInRange(retryService.getRetryDelay(100), TimeUnit.HOURS.toMillis(1));
+    }
+
+    /**
+     * Tests that a due delivery is handed back, while a delivery for another domain which is not due yet stays
+     * deferred.
+     */
+    @Test
+    public void testDefer() throws InterruptedException {
+        BlockingQueue<DeferredDelivery> retriedDeliveries = new LinkedBlockingQueue<>();
+        retryService.start(retriedDeliveries::add);
+
+        long now = System.currentTimeMillis();
+        retryService.defer(createMessage(1, "slow@mydomain.com"), "slow.com", 20, now);
+        retryService.defer(createMessage(2, "fast@mydomain.com"), "fast.com", 1, now);
+
+        assertEquals(2, retryService.getDeferredCount());
+        assertEquals(2, retryService.getDeferredDomainCount());
+
+        DeferredDelivery retriedDelivery = retriedDeliveries.poll(5, TimeUnit.SECONDS);
+
+        assertNotNull(retriedDelivery);
+        assertEquals("fast.com", retriedDelivery.getDomain());
+        assertEquals(2, retriedDelivery.getMessage().getId());
+        assertEquals(now, retriedDelivery.getFirstAttempt());
+
+        assertEquals(1, retryService.getDeferredCount());
+        assertEquals(1, retryService.getDeferredDomainCount());
+    }
+
+    /**
+     * Tests that a message expires once it has been retried for longer than the maximum age.
+     */
+    @Test
+    public void testIsExpired() {
+        long now = System.currentTimeMillis();
+
+        assertFalse(retryService.isExpired(now));
+        assertTrue(retryService.isExpired(now - TimeUnit.HOURS.toMillis(97)));
+    }
+
+    /**
+     * Asserts that a retry delay is the given delay, plus at most the random amount that is added to it.
+     *
+     * @param retryDelay The retry delay.
+     * @param delay      The expected delay, without the random amount.
+     */
+    private static void assertInRange(long retryDelay, long delay) {
+        assertTrue(retryDelay >= delay && retryDelay <= delay + delay / 10);
+    }
+
+    /**
+     * Creates a spooled message with a single recipient.
+     *
+     * @param id        The spool identifier.
+     * @param recipient The recipient.
+     * @return The spooled message.
+     */
+    private static SpooledMessage createMessage(long id, String recipient) {
+        return new SpooledMessage(id, "sender@example.com", Collections.singletonList(recipient),
+                ByteBuffer.wrap(new byte[0]));
+    }
+}
@@ -0,0 +1,28 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link DeliveryRetryServiceTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class DeliveryRetryServiceTestsContext {
+
+    @Bean
+    public DeliveryRetryService deliveryRetryService() {
+        DeliveryConfiguration deliveryConfiguration = mock(DeliveryConfiguration.class);
+
+        when(deliveryConfiguration.getRetryDelay()).thenReturn(1);
+        when(deliveryConfiguration.getRetryMaxDelay()).thenReturn(3600);
+        when(deliveryConfiguration.getMaxAge()).thenReturn(96);
+
+        return new DeliveryRetryService(deliveryConfiguration);
+    }
+}
@@ -0,0 +1,128 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.model.ForwardingResult;
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.net.SMTPTransportPool;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import tech.blueglacier.email.Email;
+
+import javax.mail.Address;
+import javax.mail.internet.MimeMessage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link MailForwardingService}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = MailForwardingServiceTestsContext.class)
+public class MailForwardingServiceTests {
+
+    /**
+     * The masked address that the replies are sent from.
+     */
+    private static final String MASKED_ADDRESS = "shopping@mydomain.com";
+
+    /**
+     * The mail resolver service.
+     */
+    @Autowired
+    private MailResolverService mailResolverService;
+
+    /**
+     * The SMTP transport pool.
+     */
+    @Autowired
+    private SMTPTransportPool smtpTransportPool;
+
+    /**
+     * The mail forwarding service.
+     */
+    @Autowired
+    private MailForwardingService mailForwardingService;
+
+    /**
+     * The e-mail that is forwarded.
+     */
+    private Email email;
+
+    /**
+     * Resets the mocks before each test.
+     */
+    @Before
+    public void setUp() {
+        reset(mailResolverService, smtpTransportPool);
+
+        email = mock(Email.class);
+        when(email.getFromEmailHeaderValue()).thenReturn("alice@mydomain.com");
+    }
+
+    /**
+     * Tests that replies to two domains are sent separately, even though the domains share their mail servers, and
+     * that replies within a domain are sent as a single message.
+     */
+    @Test
+    public void testSharedReplyPerDomain() throws Exception {
+        when(mailResolverService.resolve(anyString())).thenReturn(Collections.singletonList("mx.example.net"));
+
+        ForwardingResult result = mailForwardingService.forward(Arrays.asList(reply("bob@example.org"),
+                reply("carol@example.org"), reply("dave@example.com")), email);
+
+        assertTrue(result.getFailedRoutes().isEmpty());
+
+        ArgumentCaptor<Address[]> recipients = ArgumentCaptor.forClass(Address[].class);
+        verify(smtpTransportPool, times(2)).send(eq("mx.example.net"), any(MimeMessage.class), recipients.capture());
+
+        List<Address[]> sentRecipients = recipients.getAllValues();
+
+        assertEquals("[bob@example.org, carol@example.org]", Arrays.toString(sentRecipients.get(0)));
+        assertEquals("[dave@example.com]", Arrays.toString(sentRecipients.get(1)));
+    }
+
+    /**
+     * Tests that replies to domains whose mail servers cannot be resolved are not grouped, and each fail on their own.
+     */
+    @Test
+    public void testUnresolvedRepliesNotShared() throws Exception {
+        when(mailResolverService.resolve(anyString())).thenReturn(Collections.emptyList());
+
+        ForwardingResult result = mailForwardingService.forward(Arrays.asList(reply("bob@example.org"),
+                reply("dave@example.com")), email);
+
+        assertEquals(2, result.getFailedRoutes().size());
+        verify(smtpTransportPool, never()).send(anyString(), any(MimeMessage.class), any(Address[].class));
+    }
+
+    /**
+     * Creates a reply route from the masked address to the given original sender.
+     *
+     * @param replyTarget The original sender.
+     * @return The route.
+     */
+    private static Route reply(String replyTarget) {
+        String replyAddress = "r-" + replyTarget.replace('@', '.') + "@mydomain.com";
+
+        return new Route(Route.Kind.ENCODED_REPLY, replyAddress, MASKED_ADDRESS, "alice@mydomain.com", replyTarget);
+    }
+}
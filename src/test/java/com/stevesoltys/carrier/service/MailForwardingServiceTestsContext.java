@@ -0,0 +1,62 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.configuration.DeliveryConfiguration;
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import com.stevesoltys.carrier.net.SMTPMessageFactory;
+import com.stevesoltys.carrier.net.SMTPTransportPool;
+import com.stevesoltys.carrier.repository.ReplyAddressBatchWriter;
+import com.stevesoltys.carrier.repository.ReplyAddressRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.mail.Message;
+import javax.mail.Session;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.util.Properties;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link MailForwardingServiceTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class MailForwardingServiceTestsContext {
+
+    @Bean
+    public MailResolverService mailResolverService() {
+        return mock(MailResolverService.class);
+    }
+
+    @Bean
+    public SMTPTransportPool smtpTransportPool() {
+        return mock(SMTPTransportPool.class);
+    }
+
+    @Bean
+    public MailForwardingService mailForwardingService(MailResolverService mailResolverService,
+                                                       SMTPTransportPool smtpTransportPool) throws Exception {
+
+        SMTPMessageFactory messageFactory = mock(SMTPMessageFactory.class);
+
+        when(messageFactory.createMimeMessage(any(), any(), any())).thenAnswer(invocation -> {
+            MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+
+            message.setFrom((InternetAddress) invocation.getArguments()[1]);
+            message.setRecipient(Message.RecipientType.TO, (InternetAddress) invocation.getArguments()[2]);
+            message.setText("Hello");
+
+            return message;
+        });
+
+        return new MailForwardingService(mock(MaskedAddressService.class), mock(ReplyAddressRepository.class),
+                mock(ReplyAddressBatchWriter.class), mock(ReplyAddressService.class), mailResolverService,
+                mock(SMTPClientConfiguration.class), mock(DeliveryConfiguration.class), messageFactory,
+                smtpTransportPool, new SimpleMeterRegistry());
+    }
+}
@@ -0,0 +1,103 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.model.Route;
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the {@link MaskedAddressService}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = MaskedAddressServiceTestsContext.class)
+public class MaskedAddressServiceTests {
+
+    /**
+     * The masked address repository.
+     */
+    @Autowired
+    private MaskedAddressRepository maskedAddressRepository;
+
+    /**
+     * The masked address service.
+     */
+    @Autowired
+    private MaskedAddressService maskedAddressService;
+
+    /**
+     * Tests that a masked address resolves once it has been created, even though it was looked up beforehand.
+     */
+    @Test
+    public void testResolveAfterCreate() {
+        String address = "shopping@mydomain.com";
+
+        when(maskedAddressRepository.findRoutes(address)).thenReturn(Collections.emptyList());
+        assertFalse(maskedAddressService.resolve(address).isPresent());
+
+        when(maskedAddressRepository.findRoutes(address)).thenReturn(routeRows(address));
+        maskedAddressService.invalidate(address);
+
+        assertResolves(address);
+    }
+
+    /**
+     * Tests that a masked address resolves once it has been created, when it was created while a lookup for it was
+     * reading the database.
+     */
+    @Test
+    public void testResolveAfterCreateDuringLookup() {
+        String address = "news@mydomain.com";
+        AtomicBoolean created = new AtomicBoolean();
+
+        when(maskedAddressRepository.findRoutes(address)).thenAnswer(invocation -> {
+
+            if (created.compareAndSet(false, true)) {
+                maskedAddressService.invalidate(address);
+                return Collections.emptyList();
+            }
+
+            return routeRows(address);
+        });
+
+        assertFalse(maskedAddressService.resolve(address).isPresent());
+        assertResolves(address);
+    }
+
+    /**
+     * Asserts that the given masked address resolves to its destination.
+     *
+     * @param address The e-mail address for the masked address.
+     */
+    private void assertResolves(String address) {
+        Optional<Route> route = maskedAddressService.resolve(address);
+
+        assertTrue(route.isPresent());
+        assertEquals(Route.Kind.MASKED, route.get().getKind());
+        assertEquals("alice@example.org", route.get().getDestination());
+    }
+
+    /**
+     * Creates the rows returned by the route query for a masked address.
+     *
+     * @param address The e-mail address for the masked address.
+     * @return The rows.
+     */
+    private static List<Object[]> routeRows(String address) {
+        return Collections.singletonList(new Object[]{"MASKED", address, "alice@example.org", null});
+    }
+}
@@ -0,0 +1,36 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.repository.MaskedAddressRepository;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Optional;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link MaskedAddressServiceTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class MaskedAddressServiceTestsContext {
+
+    @Bean
+    public MaskedAddressRepository maskedAddressRepository() {
+        return mock(MaskedAddressRepository.class);
+    }
+
+    @Bean
+    public MaskedAddressService maskedAddressService(MaskedAddressRepository maskedAddressRepository) {
+        ReplyAddressService replyAddressService = mock(ReplyAddressService.class);
+        AddressFilterService addressFilterService = mock(AddressFilterService.class);
+
+        when(replyAddressService.decode(anyString())).thenReturn(Optional.empty());
+        when(addressFilterService.mightExist(anyString())).thenReturn(true);
+
+        return new MaskedAddressService(maskedAddressRepository, replyAddressService, addressFilterService);
+    }
+}
@@ -0,0 +1,104 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.model.EncodedReplyAddress;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the {@link ReplyAddressService}.
+ *
+ * @author Steve Soltys
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@SpringBootTest(classes = ReplyAddressServiceTestsContext.class)
+public class ReplyAddressServiceTests {
+
+    /**
+     * The reply address service.
+     */
+    @Autowired
+    private ReplyAddressService replyAddressService;
+
+    /**
+     * Tests that an encoded reply address decodes to the masked address and sender it was created with, even after
+     * its case has been changed.
+     */
+    @Test
+    public void testEncodeDecode() {
+        String replyAddress = replyAddressService.encode("shopping@mydomain.com", "Alice@example.org");
+
+        assertTrue(replyAddress.endsWith("@mydomain.com"));
+        assertTrue(replyAddress.length() - "@mydomain.com".length() <= 64);
+
+        for (String address : new String[]{replyAddress, replyAddress.toUpperCase(Locale.ROOT)}) {
+            Optional<EncodedReplyAddress> decoded = replyAddressService.decode(address);
+
+            assertTrue(decoded.isPresent());
+            assertEquals("shopping@mydomain.com", decoded.get().getMaskedAddress());
+            assertEquals("Alice@example.org", decoded.get().getSender());
+        }
+    }
+
+    /**
+     * Tests that a masked address on another domain is encoded in full.
+     */
+    @Test
+    public void testEncodeDecodeOtherDomain() {
+        String replyAddress = replyAddressService.encode("shopping@otherdomain.com", "alice@example.org");
+        Optional<EncodedReplyAddress> decoded = replyAddressService.decode(replyAddress);
+
+        assertTrue(decoded.isPresent());
+        assertEquals("shopping@otherdomain.com", decoded.get().getMaskedAddress());
+    }
+
+    /**
+     * Tests that the local part of a reply address for a typical sender fits within the 64 characters allowed by
+     * RFC 5321.
+     */
+    @Test
+    public void testLocalPartLength() {
+        String replyAddress = replyAddressService.encode("shopping@mydomain.com", "noreply@amazon.com");
+
+        assertTrue(replyAddress.indexOf('@') <= 64);
+    }
+
+    /**
+     * Tests that a masked address whose domain differs in case from the configured domain decodes to the exact address
+     * it was created with.
+     */
+    @Test
+    public void testEncodeDecodeDomainCase() {
+        String replyAddress = replyAddressService.encode("shopping@MyDomain.com", "alice@example.org");
+        Optional<EncodedReplyAddress> decoded = replyAddressService.decode(replyAddress);
+
+        assertTrue(decoded.isPresent());
+        assertEquals("shopping@MyDomain.com", decoded.get().getMaskedAddress());
+    }
+
+    /**
+     * Tests that a reply address which has been tampered with, or which is not an encoded reply address, is rejected.
+     */
+    @Test
+    public void testDecodeFailure() {
+        String replyAddress = replyAddressService.encode("shopping@mydomain.com", "alice@example.org");
+        int index = replyAddress.indexOf('@') / 2;
+
+        char replacement = replyAddress.charAt(index) == 'a' ? 'b' : 'a';
+        String tamperedAddress = replyAddress.substring(0, index) + replacement + replyAddress.substring(index + 1);
+
+        assertFalse(replyAddressService.decode(tamperedAddress).isPresent());
+        assertFalse(replyAddressService.decode(replyAddress.replace("@mydomain.com", "@otherdomain.com")).isPresent());
+        assertFalse(replyAddressService.decode("r-abcdefg@mydomain.com").isPresent());
+        assertFalse(replyAddressService.decode("shopping@mydomain.com").isPresent());
+    }
+}
@@ -0,0 +1,28 @@
+package com.stevesoltys.carrier.service;
+
+import com.stevesoltys.carrier.configuration.SMTPClientConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The context configuration for the {@link ReplyAddressServiceTests}.
+ *
+ * @author Steve Soltys
+ */
+@Configuration
+public class ReplyAddressServiceTestsContext {
+
+    @Bean
+    public ReplyAddressService replyAddressService() {
+        SMTPClientConfiguration clientConfiguration = mock(SMTPClientConfiguration.class);
+
+        when(clientConfiguration.getDomain()).thenReturn("mydomain.com");
+        when(clientConfiguration.getReplyAddressKey()).thenReturn("0123456789abcdef0123456789abcdef");
+        when(clientConfiguration.getReplyAddressTtl()).thenReturn(30);
+
+        return new ReplyAddressService(clientConfiguration);
+    }
+}